@@ -2,10 +2,39 @@ import java.util.Random;
 import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class AI {
 
-    private static Random random = new Random();
+    // Each AI has its own random numbers, so AIs on different threads never share any state
+    private final Random random;
+
+    /**
+    * Creates an easy AI with an unpredictable seed.
+    */
+    public AI() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+    * Creates an easy AI whose random choices are repeatable.
+    *
+    * @param seed the seed of the AI's random choices
+    */
+    public AI(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+    * Returns the move this AI makes, using its own random numbers.
+    *
+    * @param board the current state of the board
+    * @param validMoves the valid AI moves
+    * @return the move that the AI should make
+    */
+    public Point chooseMove(Board board, HashMap<Point, ArrayList<Point>> validMoves) {
+        return makeMove(board, validMoves, random);
+    }
 
     /**
     * Returns a corner move from the valid AI moves that gives the most points.
@@ -14,7 +43,7 @@ public class AI {
     * @return if a corner move is possible returns a point, else null
     */
     public static Point cornerMove(HashMap<Point, ArrayList<Point>> validAIMoves) {
-        Point cornerList[] = {new Point('A', 0), new Point('A', 8), new Point('H', 0), new Point('H', 8)};
+        Point cornerList[] = {Point.of('A', 0), Point.of('A', 7), Point.of('H', 0), Point.of('H', 7)};
 
         Point bestCorner = null;
         int bestCornerPoints = 0;
@@ -38,9 +67,10 @@ public class AI {
     * Returns a random valid move from the valid white moves.
     *
     * @param validAIMoves a HashMap of the valid AI moves
+    * @param random the random numbers to choose with
     * @return a random valid move from the valid AI move.
     */
-    public static Point randomValidMove(HashMap<Point, ArrayList<Point>> validAIMoves) {
+    public static Point randomValidMove(HashMap<Point, ArrayList<Point>> validAIMoves, Random random) {
         ArrayList<Point> validPoints = new ArrayList<>(validAIMoves.keySet());
         Point randomPoint = validPoints.get(random.nextInt(validPoints.size()));
         return randomPoint;
@@ -88,12 +118,29 @@ public class AI {
 
     /**
     * Returns the move that the AI should make based on the current state of the board.
+    * This is the "easy" level: it only looks one move ahead.
+    * Random choices use the calling thread's random numbers.
     *
     * @param board the current state of the board
     * @param validMoves the valid AI moves
     * @return the move that the AI should make
     */
     public static Point makeMove(Board board, HashMap<Point, ArrayList<Point>> validMoves) {
+        return makeMove(board, validMoves, ThreadLocalRandom.current());
+    }
+
+    /**
+    * Returns the move that the easy AI should make, making random choices with the given random numbers.
+    *
+    * @param board the current state of the board
+    * @param validMoves the valid AI moves
+    * @param random the random numbers to choose with
+    * @return the move that the AI should make
+    */
+    public static Point makeMove(Board board, HashMap<Point, ArrayList<Point>> validMoves, Random random) {
+        // The easy AI is so fast that reading the clock would cost more than the move, so it only does when measured
+        boolean recording = EngineMetrics.isRecording();
+        long start = recording ? System.nanoTime() : 0;
         Point AIMove = null;
 
         if (cornerMove(validMoves) != null) {
@@ -106,8 +153,69 @@ public class AI {
             AIMove = maximizePointsMove(validMoves);
         }
         else {
-            AIMove = randomValidMove(validMoves);
+            AIMove = randomValidMove(validMoves, random);
+        }
+
+        // The easy AI looks one move ahead at the moves its caller generated
+        if (recording) {
+            EngineMetrics.record("easy", System.nanoTime() - start, 1, validMoves.size(), 0, 0, 1, validMoves.size());
         }
         return AIMove;
     }
+
+    /**
+    * Returns the move found by an alpha-beta search within a time budget.
+    * Keep one engine for the whole game, so its transposition table carries over from move to move.
+    *
+    * @param engine the engine that searches, e.g. one new SearchEngine() per game
+    * @param board the current state of the board
+    * @param colour the colour the AI is playing
+    * @param timeBudgetMillis how long the AI may think in milliseconds
+    * @return the move that the AI should make, or null if it has no valid moves
+    */
+    public static Point makeMove(SearchEngine engine, Board board, Tile colour, long timeBudgetMillis) {
+        return search(engine, board, colour, timeBudgetMillis).getBestMove();
+    }
+
+    /**
+    * Runs an alpha-beta search within a time budget and returns the full result,
+    * including the depth reached and the number of nodes searched.
+    *
+    * @param engine the engine that searches, kept for the whole game
+    * @param board the current state of the board
+    * @param colour the colour the AI is playing
+    * @param timeBudgetMillis how long the AI may think in milliseconds
+    * @return the result of the search
+    */
+    public static SearchResult search(SearchEngine engine, Board board, Tile colour, long timeBudgetMillis) {
+        return engine.search(board, colour, timeBudgetMillis, 0);
+    }
+
+    /**
+    * Runs an alpha-beta search on several threads that share one transposition table.
+    * Keep the parallel search open for the whole game, so its threads and table carry over from move to move.
+    *
+    * @param search the parallel search, e.g. one new ParallelSearch(threads) per game, closed when the game ends
+    * @param board the current state of the board
+    * @param colour the colour the AI is playing
+    * @param timeBudgetMillis how long the AI may think in milliseconds
+    * @return the result of the search, with the nodes of all threads added together
+    */
+    public static SearchResult search(ParallelSearch search, Board board, Tile colour, long timeBudgetMillis) {
+        return search.search(board, colour, timeBudgetMillis, 0);
+    }
+
+    /**
+    * Returns the move found by a Monte Carlo tree search within a time budget, as an alternative to the alpha-beta search.
+    * The search's tree and threads are allocated once, so keep it for the whole game and close it afterwards.
+    *
+    * @param search the Monte Carlo search, with its threads, node capacity and RAVE setting
+    * @param board the current state of the board
+    * @param colour the colour the AI is playing
+    * @param timeBudgetMillis how long the AI may think in milliseconds
+    * @return the result of the search, with the number of playouts as its nodes
+    */
+    public static SearchResult monteCarloSearch(MonteCarloSearch search, Board board, Tile colour, long timeBudgetMillis) {
+        return search.search(board, colour, timeBudgetMillis, 0);
+    }
 }
@@ -0,0 +1,271 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scores a file of positions with the search engine and streams the results to another file.
+ *
+ * Each input line is a position: 64 characters for the squares, row by row from a1,
+ * with X (or B) for black, O (or W) for white and - (or .) for empty,
+ * then a space and X or O for the player to move. Blank lines and lines starting with # are skipped.
+ *
+ * Each output line repeats the position and adds the best move in standard notation (e.g. "d3",
+ * "--" if the player has to pass), the score for the player to move, the depth reached
+ * and whether the score is exact. Lines that cannot be read are copied with an error message.
+ * Results are written in input order.
+ *
+ * Only a bounded number of positions are in flight at a time, so memory stays flat however big the input is.
+ *
+ * Usage: java BatchAnalysis [input] [output] [--depth n] [--millis n] [--nodes n] [--threads n]
+ */
+class BatchAnalysis {
+    // Positions read ahead per worker, so no worker waits for the reader
+    private static final int QUEUED_PER_THREAD = 64;
+
+    private final int depthLimit;
+    private final long timeLimitMillis;
+    private final long nodeLimit;
+    private final ThreadLocal<SearchEngine> engines;
+
+    /**
+     * Constructor for BatchAnalysis class. At least one of the limits should be set.
+     *
+     * @param depthLimit The depth to search each position to, or 0 for no depth limit.
+     * @param timeLimitMillis The time budget per position in milliseconds, or 0 for no time limit.
+     * @param nodeLimit The node budget per position, or 0 for no node limit.
+     */
+    public BatchAnalysis(int depthLimit, long timeLimitMillis, long nodeLimit) {
+        this.depthLimit = depthLimit;
+        this.timeLimitMillis = timeLimitMillis;
+        this.nodeLimit = nodeLimit;
+
+        // An engine runs one search at a time, so each worker thread gets its own
+        this.engines = ThreadLocal.withInitial(() -> {
+            SearchEngine engine = new SearchEngine();
+            engine.setDepthLimit(depthLimit);
+            engine.setScoreForcedMoves(true);
+            return engine;
+        });
+    }
+
+    /**
+     * Reads the squares of a position in the batch format.
+     *
+     * @param line The 64 squares, a space and the player to move.
+     * @return The board of the position.
+     * @throws IllegalArgumentException if the line is not a valid position
+     */
+    static Board parseBoard(String line) {
+        String position = line.strip();
+        if (position.length() != Board.SIZE * Board.SIZE + 2 || position.charAt(Board.SIZE * Board.SIZE) != ' ') {
+            throw new IllegalArgumentException("Expected 64 squares, a space and the player to move");
+        }
+
+        long black = 0;
+        long white = 0;
+        for (int square = 0; square < Board.SIZE * Board.SIZE; square++) {
+            Tile tile = parseTile(position.charAt(square));
+            if (tile == Tile.BLACK) {
+                black |= 1L << square;
+            }
+            else if (tile == Tile.WHITE) {
+                white |= 1L << square;
+            }
+        }
+        return new Board(black, white);
+    }
+
+    /**
+     * Reads the player to move of a position in the batch format.
+     *
+     * @param line The 64 squares, a space and the player to move.
+     * @return The colour of the player to move.
+     * @throws IllegalArgumentException if the player to move is not X or O
+     */
+    static Tile parseColour(String line) {
+        String position = line.strip();
+        Tile colour = parseTile(position.charAt(position.length() - 1));
+        if (colour == Tile.EMPTY) {
+            throw new IllegalArgumentException("The player to move must be X or O");
+        }
+        return colour;
+    }
+
+    /**
+     * Reads one square of a position.
+     *
+     * @param c The character of the square.
+     * @return The tile it stands for.
+     * @throws IllegalArgumentException if the character is not a square
+     */
+    private static Tile parseTile(char c) {
+        switch (c) {
+            case 'X':
+            case 'x':
+            case 'B':
+            case 'b':
+            case '*':
+                return Tile.BLACK;
+            case 'O':
+            case 'o':
+            case 'W':
+            case 'w':
+                return Tile.WHITE;
+            case '-':
+            case '.':
+                return Tile.EMPTY;
+            default:
+                throw new IllegalArgumentException("Unknown square '" + c + "'");
+        }
+    }
+
+    /**
+     * Scores one position.
+     *
+     * @param line The position in the batch format.
+     * @return The output line for the position.
+     */
+    String analyse(String line) {
+        Board board;
+        Tile colour;
+        try {
+            board = parseBoard(line);
+            colour = parseColour(line);
+        }
+        catch (IllegalArgumentException e) {
+            return line + " error: " + e.getMessage();
+        }
+
+        SearchResult result = engines.get().search(board, colour, timeLimitMillis, nodeLimit);
+        Point move = result.getBestMove();
+        String notation = move == null ? "--" : move.toNotation();
+        return line.strip() + " " + notation + " " + result.getScore() + " " + result.getDepth() + (result.isExact() ? " exact" : "");
+    }
+
+    /**
+     * Scores every position in a file and writes the results in input order.
+     *
+     * @param input The file of positions.
+     * @param output The file to write the results to. It is replaced if it exists.
+     * @param threads How many positions to score at once.
+     * @return How many positions were scored.
+     * @throws IOException if either file cannot be read or written
+     * @throws InterruptedException if interrupted while waiting for the workers
+     * @throws ExecutionException if a worker fails
+     */
+    long run(Path input, Path output, int threads) throws IOException, InterruptedException, ExecutionException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<Future<String>>(threads * QUEUED_PER_THREAD);
+
+        // The marker that tells the writer there is nothing more to come
+        Future<String> endOfInput = CompletableFuture.completedFuture(null);
+
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isBlank() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String position = line;
+                    // Blocks while the queue is full, which is what keeps the memory flat
+                    pending.put(workers.submit(() -> analyse(position)));
+                }
+            }
+            catch (IOException e) {
+                // Waits for room like the results do, so the writer always sees the failure
+                try {
+                    pending.put(CompletableFuture.failedFuture(new UncheckedIOException(e)));
+                }
+                catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            try {
+                pending.put(endOfInput);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "batch-reader");
+
+        long count = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            reader.start();
+            while (true) {
+                Future<String> result = pending.take();
+                if (result == endOfInput) {
+                    break;
+                }
+                out.write(result.get());
+                out.newLine();
+                count++;
+            }
+        }
+        finally {
+            reader.interrupt();
+            workers.shutdownNow();
+        }
+        return count;
+    }
+
+    /**
+     * Runs a batch analysis from the command line.
+     *
+     * @param args The input file, the output file and the options.
+     * @throws IOException if either file cannot be read or written
+     * @throws InterruptedException if interrupted while waiting for the workers
+     * @throws ExecutionException if a worker fails
+     */
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        if (args.length < 2) {
+            System.out.println("Usage: java BatchAnalysis [input] [output] [--depth n] [--millis n] [--nodes n] [--threads n]");
+            return;
+        }
+
+        int depth = 0;
+        long millis = 0;
+        long nodes = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--depth":
+                    depth = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--millis":
+                    millis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--nodes":
+                    nodes = Long.parseLong(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (depth == 0 && millis == 0 && nodes == 0) {
+            depth = 6;
+        }
+
+        long start = System.nanoTime();
+        long count = new BatchAnalysis(depth, millis, nodes).run(Path.of(args[0]), Path.of(args[1]), threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d positions in %.2f s (%,.0f positions/s)%n", count, seconds, count / seconds);
+    }
+}
@@ -0,0 +1,280 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+/**
+ * Micro-benchmarks for the engine's hot paths, run over a fixed corpus of opening, midgame and endgame positions.
+ *
+ * Each benchmark is warmed up, then timed over several fixed-length iterations. It reports operations per second
+ * and the bytes allocated per operation (from the thread allocation counter, like a GC profiler's normalised
+ * allocation rate). Results can be saved and compared against a committed baseline, so every change to the
+ * engine is measured instead of guessed.
+ *
+ * The committed baseline must have a row for every benchmark in {@link #operations()}; a benchmark without one
+ * is marked "no base" instead of being silently left out of the comparison. benchmark-legacy.txt holds the
+ * same corpus measured on the original HashMap and Piece[][] board, for the operations it had.
+ *
+ * Usage: java Benchmarks [--quick] [--save file] [--baseline file] [name filter]
+ */
+class Benchmarks {
+    static final String BASELINE_FILE = "benchmark-baseline.txt";
+
+    // Positions per phase, and how many random moves from the start each phase is
+    private static final int POSITIONS_PER_PHASE = 16;
+    private static final int OPENING_PLIES = 6;
+    private static final int MIDGAME_PLIES = 26;
+    private static final int ENDGAME_PLIES = 48;
+    private static final long CORPUS_SEED = 20240420L;
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 500;
+
+    // Results are folded in here so the JIT cannot drop the work being measured
+    private static volatile long sink;
+
+    /**
+     * A benchmark position with everything its operations need precomputed.
+     */
+    private static class Position {
+        final Board board;
+        final Tile colour;
+        final VaildMoves checker;
+        final HashMap<Point, ArrayList<Point>> validMoves;
+        final Point move;
+        final ArrayList<Point> flips;
+
+        Position(Board board, Tile colour) {
+            this.board = board;
+            this.colour = colour;
+            this.checker = new VaildMoves(board);
+            this.validMoves = checker.getValidPlayerMoves(colour);
+
+            // The benchmarked move is the lowest legal square, so every run applies the same one
+            long moves = checker.getValidMoveMask(colour);
+            this.move = Point.ofIndex(Long.numberOfTrailingZeros(moves));
+            this.flips = validMoves.get(move);
+        }
+    }
+
+    /**
+     * Plays random moves from the start to build the positions of one game phase.
+     * The seed is fixed, so the corpus is the same on every run and every machine.
+     *
+     * @param plies How many moves into the game the positions are.
+     * @param seed The seed of the random moves.
+     * @return The positions, each with a player to move that has at least one valid move.
+     */
+    static List<Position> corpus(int plies, long seed) {
+        Random random = new Random(seed);
+        List<Position> positions = new ArrayList<Position>();
+
+        while (positions.size() < POSITIONS_PER_PHASE) {
+            Board board = new Board();
+            Tile colour = Tile.BLACK;
+            boolean finished = false;
+
+            for (int ply = 0; ply < plies && !finished; ply++) {
+                long moves = VaildMoves.getLegalMoves(board.getDiscs(colour), board.getDiscs(VaildMoves.opposite(colour)));
+                if (moves == 0) {
+                    colour = VaildMoves.opposite(colour);
+                    moves = VaildMoves.getLegalMoves(board.getDiscs(colour), board.getDiscs(VaildMoves.opposite(colour)));
+                    finished = moves == 0;
+                }
+                if (!finished) {
+                    for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                        moves &= moves - 1;
+                    }
+                    board.makeMove(Long.numberOfTrailingZeros(moves), colour);
+                    colour = VaildMoves.opposite(colour);
+                }
+            }
+
+            // Games that ended early, or positions where the player has to pass, are skipped
+            if (!finished && VaildMoves.getLegalMoves(board.getDiscs(colour), board.getDiscs(VaildMoves.opposite(colour))) != 0) {
+                board.clearHistory();
+                positions.add(new Position(board, colour));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the benchmarked operations. Each one runs on a single position and returns a value for the sink.
+     *
+     * @return The operations by name.
+     */
+    static Map<String, ToLongFunction<Position>> operations() {
+        Map<String, ToLongFunction<Position>> operations = new LinkedHashMap<String, ToLongFunction<Position>>();
+
+        operations.put("getValidPlayerMoves", p -> p.checker.getValidPlayerMoves(p.colour).size());
+
+        operations.put("getLegalMoves", p -> VaildMoves.getLegalMoves(p.board.getDiscs(p.colour), p.board.getDiscs(VaildMoves.opposite(p.colour))));
+
+        // Applies the move through the old API, then flips it back so the position is unchanged
+        operations.put("flipAllPieces+setPiece", p -> {
+            p.board.flipAllPieces(p.flips);
+            p.board.setPiece(new Piece(p.colour), p.move);
+            long hash = p.board.getHash();
+            p.board.flipAllPieces(p.flips);
+            p.board.setPiece(new Piece(), p.move);
+            return hash;
+        });
+
+        operations.put("makeMove+unmakeMove", p -> {
+            long flips = p.board.makeMove(p.move.getIndex(), p.colour);
+            p.board.unmakeMove();
+            return flips;
+        });
+
+        operations.put("AI.makeMove", p -> AI.makeMove(p.board, p.validMoves).getIndex());
+
+        operations.put("toString(HashMap)", p -> p.board.toString(p.validMoves).length());
+
+        BoardRenderer renderer = new BoardRenderer();
+        operations.put("BoardRenderer.render", p -> renderer.render(p.board, p.colour).length());
+
+        return operations;
+    }
+
+    /**
+     * Times one operation over a corpus.
+     *
+     * @param operation The operation to time.
+     * @param positions The positions to run it on, in turn.
+     * @param warmups The number of warmup iterations.
+     * @param iterations The number of measured iterations.
+     * @return The mean operations per second, its standard deviation and the bytes allocated per operation.
+     */
+    static double[] measure(ToLongFunction<Position> operation, List<Position> positions, int warmups, int iterations) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        double[] rates = new double[iterations];
+        long allocated = 0;
+        long operations = 0;
+
+        for (int iteration = -warmups; iteration < iterations; iteration++) {
+            long count = 0;
+            long accumulator = 0;
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long end = start + ITERATION_MILLIS * 1000000;
+            long now;
+
+            do {
+                for (int i = 0; i < positions.size(); i++) {
+                    accumulator += operation.applyAsLong(positions.get(i));
+                }
+                count += positions.size();
+                now = System.nanoTime();
+            } while (now < end);
+
+            sink += accumulator;
+            if (iteration >= 0) {
+                rates[iteration] = count * 1e9 / (now - start);
+                allocated += threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+                operations += count;
+            }
+        }
+
+        double mean = 0;
+        for (double rate : rates) {
+            mean += rate / iterations;
+        }
+        double variance = 0;
+        for (double rate : rates) {
+            variance += (rate - mean) * (rate - mean) / Math.max(1, iterations - 1);
+        }
+        return new double[] {mean, Math.sqrt(variance), (double) allocated / operations};
+    }
+
+    /**
+     * Reads saved results.
+     *
+     * @param file The results file.
+     * @return The operations per second and bytes per operation of each benchmark, by name.
+     * @throws IOException if the file cannot be read
+     */
+    static Map<String, double[]> readResults(Path file) throws IOException {
+        Map<String, double[]> results = new HashMap<String, double[]>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.strip().split("\\s+");
+            results.put(fields[0], new double[] {Double.parseDouble(fields[1]), Double.parseDouble(fields[2])});
+        }
+        return results;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int warmups = WARMUP_ITERATIONS;
+        int iterations = MEASURE_ITERATIONS;
+        Path save = null;
+        Path baselineFile = null;
+        String filter = "";
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--quick")) {
+                warmups = 1;
+                iterations = 2;
+            }
+            else if (args[i].equals("--save")) {
+                save = Path.of(args[++i]);
+            }
+            else if (args[i].equals("--baseline")) {
+                baselineFile = Path.of(args[++i]);
+            }
+            else {
+                filter = args[i];
+            }
+        }
+        if (baselineFile == null && Files.exists(Path.of(BASELINE_FILE))) {
+            baselineFile = Path.of(BASELINE_FILE);
+        }
+        Map<String, double[]> baseline = baselineFile != null ? readResults(baselineFile) : new HashMap<String, double[]>();
+
+        Map<String, List<Position>> phases = new LinkedHashMap<String, List<Position>>();
+        phases.put("opening", corpus(OPENING_PLIES, CORPUS_SEED));
+        phases.put("midgame", corpus(MIDGAME_PLIES, CORPUS_SEED + 1));
+        phases.put("endgame", corpus(ENDGAME_PLIES, CORPUS_SEED + 2));
+
+        StringBuilder results = new StringBuilder("# benchmark ops/s bytes/op\n");
+        results.append(String.format("# Java %s, %d processors%n", System.getProperty("java.version"), Runtime.getRuntime().availableProcessors()));
+        System.out.printf("%-34s %14s %10s %10s %9s%n", "benchmark", "ops/s", "+/-", "bytes/op", "vs base");
+
+        for (Map.Entry<String, ToLongFunction<Position>> operation : operations().entrySet()) {
+            for (Map.Entry<String, List<Position>> phase : phases.entrySet()) {
+                String name = operation.getKey() + ":" + phase.getKey();
+                if (!name.contains(filter)) {
+                    continue;
+                }
+
+                double[] result = measure(operation.getValue(), phase.getValue(), warmups, iterations);
+                String change = "";
+                if (baseline.containsKey(name)) {
+                    change = String.format("%+8.1f%%", 100 * (result[0] / baseline.get(name)[0] - 1));
+                }
+                else if (!baseline.isEmpty()) {
+                    change = "no base";
+                }
+
+                System.out.printf("%-34s %14.0f %10.0f %10.1f %9s%n", name, result[0], result[1], result[2], change);
+                results.append(String.format("%s %.0f %.1f%n", name, result[0], result[2]));
+            }
+        }
+
+        if (save != null) {
+            Files.writeString(save, results.toString());
+            System.out.println("Saved results to " + save);
+        }
+    }
+}
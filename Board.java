@@ -3,35 +3,72 @@ import java.util.HashMap;
 
 /**
  * Represents a game board.
+ *
+ * The board is stored as two 64-bit bitboards, one per colour. Bit (y * 8 + x) is set
+ * when the square at column x and row y holds a disc of that colour.
  */
 class Board {
-    private Piece gameBoard[][];
+    public static final int SIZE = 8;
 
-    private HashMap<Point, Piece> blackPieces = new HashMap<Point, Piece>();
-    private HashMap<Point, Piece> whitePieces = new HashMap<Point, Piece>();
+    // Every move fills an empty square, so a game can never need more undo records than squares
+    private static final int MAX_UNDO = SIZE * SIZE;
+
+    private long blackDiscs;
+    private long whiteDiscs;
+
+    // Zobrist hash of the discs, kept up to date by every method that changes the board
+    private long hash;
+
+    private final int[] undoSquares = new int[MAX_UNDO];
+    private final long[] undoFlips = new long[MAX_UNDO];
+    private int undoCount;
 
     /**
      * Constructor for Board class.
      */
     public Board() {
-        gameBoard = new Piece[8][8];
         SetUpBoard();
     }
 
+    /**
+     * Creates a copy of another board.
+     *
+     * @param other The board to copy.
+     */
+    public Board(Board other) {
+        this.blackDiscs = other.blackDiscs;
+        this.whiteDiscs = other.whiteDiscs;
+        this.hash = other.hash;
+    }
+
+    /**
+     * Creates a board from a pair of bitboards.
+     *
+     * @param blackDiscs The bitboard of black discs.
+     * @param whiteDiscs The bitboard of white discs.
+     * @throws IllegalArgumentException if a square is occupied by both colours
+     */
+    public Board(long blackDiscs, long whiteDiscs) {
+        if ((blackDiscs & whiteDiscs) != 0) {
+            throw new IllegalArgumentException("A square cannot hold both a black and a white disc");
+        }
+        this.blackDiscs = blackDiscs;
+        this.whiteDiscs = whiteDiscs;
+        this.hash = Zobrist.hash(blackDiscs, whiteDiscs);
+    }
+
     /**
      * Sets up the board with pieces in their initial positions.
      */
     private void SetUpBoard() {
-        for (int i = 0; i < gameBoard.length; i++) {
-            for (int j = 0; j < gameBoard.length; j++) {
-                gameBoard[i][j] = new Piece();
-            }
-        }
+        blackDiscs = 0L;
+        whiteDiscs = 0L;
+        hash = 0L;
 
-        this.setPiece(new Piece(Tile.WHITE), new Point(3, 3));
-        this.setPiece(new Piece(Tile.BLACK), new Point(4, 3));
-        this.setPiece(new Piece(Tile.WHITE), new Point(4, 4));
-        this.setPiece(new Piece(Tile.BLACK), new Point(3, 4));
+        this.setPiece(new Piece(Tile.WHITE), Point.of(3, 3));
+        this.setPiece(new Piece(Tile.BLACK), Point.of(4, 3));
+        this.setPiece(new Piece(Tile.WHITE), Point.of(4, 4));
+        this.setPiece(new Piece(Tile.BLACK), Point.of(3, 4));
     }
 
     /**
@@ -41,37 +78,7 @@ class Board {
      * @return A string representation of the board with valid moves.
      */
     public String toString(HashMap<Point, ArrayList<Point>> validMoves) {
-        String str = "-+---+---+---+---+---+---+---+---+\n";
-
-        for (int y = 0; y < gameBoard.length; y++) {
-
-            // Creates the number list on the left Y-axis
-            str += Integer.toString(y) + "|";
-
-
-            for (int x = 0; x < gameBoard.length; x++) {
-
-                // If this is a valid move, a number will be printed on the tile
-                // It will represent the number of points the player will get playing that move
-                if (validMoves.containsKey(new Point(x, y))) {
-                    str += " " + validMoves.get(new Point(x, y)).size() + " ";
-                }
-                else {
-                    str += gameBoard[y][x].toString();
-                }
-
-                // Adds the vertical divider to create the grid
-                str += "|";
-            }
-            
-            // Adds the horizontal divider to create the grid
-            str += "\n-+---+---+---+---+---+---+---+---|\n";
-        }
-
-        str += " | A | B | C | D | E | F | G | H |";
-        str += "\n    Black(o): " + getNumberOfBlackPieces() + "    White(@): " + getNumberOfWhitePieces();
-        
-        return str;
+        return BoardRenderer.toString(this, validMoves);
     }
 
     /**
@@ -90,7 +97,24 @@ class Board {
      * @return The piece at the given point on the board.
      */
     public Piece getPiece(Point point) {
-        return gameBoard[point.getY()][point.getX()];
+        return new Piece(getTile(point));
+    }
+
+    /**
+     * Returns the colour of the tile at a given point on the board.
+     *
+     * @param point The point on the board to look at.
+     * @return The colour of the tile at the given point.
+     */
+    public Tile getTile(Point point) {
+        long bit = bitOf(point);
+        if ((blackDiscs & bit) != 0) {
+            return Tile.BLACK;
+        }
+        else if ((whiteDiscs & bit) != 0) {
+            return Tile.WHITE;
+        }
+        return Tile.EMPTY;
     }
 
     /**
@@ -100,12 +124,7 @@ class Board {
      * @return True if the point is on the board, false otherwise.
      */
     public boolean isPointOnBoard(Point point) {
-        if (point.getX() < 8 && point.getY() < 8) {
-            if (point.getX() >= 0 && point.getY() >= 0) {
-                return true;
-            }
-        }
-        return false;
+        return point.isOnBoard();
     }
 
     /**
@@ -114,9 +133,141 @@ class Board {
      * @param points The list of coordinates to flip pieces at.
      */
     public void flipAllPieces(ArrayList<Point> points) {
+        long mask = 0L;
         for (Point point : points) {
-            this.setPiece(this.getPiece(point).getOpposite(), point);
+            mask |= bitOf(point);
         }
+        flipDiscs(mask);
+    }
+
+    /**
+     * Flips every disc in a bitboard mask to its opposite colour. Empty squares in the mask are left alone.
+     *
+     * @param mask The squares to flip.
+     */
+    public void flipDiscs(long mask) {
+        long occupied = (blackDiscs | whiteDiscs) & mask;
+        blackDiscs ^= occupied;
+        whiteDiscs ^= occupied;
+        hash ^= Zobrist.flipKey(occupied);
+    }
+
+    /**
+     * Plays a move for a colour: places its disc and flips every disc it captures.
+     * The move is pushed onto the board's undo stack so it can be taken back with {@link #unmakeMove()}.
+     *
+     * @param square The square index (y * 8 + x) of the move.
+     * @param colour The colour of the player making the move.
+     * @return The bitboard of flipped discs, which together with the square is the move's undo record.
+     * @throws IllegalArgumentException if the move is not legal for that colour
+     * @throws IllegalStateException if the undo stack is full
+     */
+    public long makeMove(int square, Tile colour) {
+        long bit = 1L << square;
+        long player = getDiscs(colour);
+        long opponent = getDiscs(VaildMoves.opposite(colour));
+        long flips = VaildMoves.flipsFor(square, player, opponent);
+
+        if (flips == 0 || ((player | opponent) & bit) != 0) {
+            throw new IllegalArgumentException("Move is invalid as no pieces can be flipped");
+        }
+        if (undoCount == MAX_UNDO) {
+            throw new IllegalStateException("The undo stack is full");
+        }
+
+        applyMove(square, flips, colour);
+        undoSquares[undoCount] = square;
+        undoFlips[undoCount] = flips;
+        undoCount++;
+        return flips;
+    }
+
+    /**
+     * Plays a move for a colour: places its disc and flips every disc it captures.
+     *
+     * @param point The point of the move.
+     * @param colour The colour of the player making the move.
+     * @return The bitboard of flipped discs.
+     * @throws IllegalArgumentException if the move is not legal for that colour
+     */
+    public long makeMove(Point point, Tile colour) {
+        return makeMove(bitIndexOf(point), colour);
+    }
+
+    /**
+     * Takes back the last move played with {@link #makeMove(int, Tile)}.
+     *
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public void unmakeMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("There is no move to take back");
+        }
+        undoCount--;
+        unmakeMove(undoSquares[undoCount], undoFlips[undoCount]);
+    }
+
+    /**
+     * Takes back a move given its undo record, without touching the undo stack.
+     * This is for callers that keep their own records; the move must be the last one applied to the board.
+     *
+     * @param square The square index (y * 8 + x) of the move.
+     * @param flips The bitboard of discs the move flipped.
+     */
+    public void unmakeMove(int square, long flips) {
+        long bit = 1L << square;
+        long restored = bit | flips;
+
+        // The mover owns the square now, so its disc decides which colour gets the flips back
+        if ((blackDiscs & bit) != 0) {
+            blackDiscs &= ~restored;
+            whiteDiscs |= flips;
+            hash ^= Zobrist.BLACK_KEYS[square];
+        }
+        else {
+            whiteDiscs &= ~restored;
+            blackDiscs |= flips;
+            hash ^= Zobrist.WHITE_KEYS[square];
+        }
+        hash ^= Zobrist.flipKey(flips);
+    }
+
+    /**
+     * Places a disc and flips a set of discs for a colour, without checking the move.
+     *
+     * @param square The square index (y * 8 + x) of the move.
+     * @param flips The bitboard of discs to flip.
+     * @param colour The colour of the player making the move.
+     */
+    private void applyMove(int square, long flips, Tile colour) {
+        long bit = 1L << square;
+        if (colour == Tile.BLACK) {
+            blackDiscs |= bit | flips;
+            whiteDiscs &= ~flips;
+            hash ^= Zobrist.BLACK_KEYS[square];
+        }
+        else {
+            whiteDiscs |= bit | flips;
+            blackDiscs &= ~flips;
+            hash ^= Zobrist.WHITE_KEYS[square];
+        }
+        hash ^= Zobrist.flipKey(flips);
+    }
+
+    /**
+     * Returns the number of moves on the undo stack.
+     *
+     * @return The number of moves that can be taken back.
+     */
+    public int getUndoDepth() {
+        return undoCount;
+    }
+
+    /**
+     * Empties the undo stack, e.g. after the board was edited with setPiece.
+     */
+    public void clearHistory() {
+        undoCount = 0;
     }
 
     /**
@@ -126,43 +277,62 @@ class Board {
      * @param point  The point on the board to set the piece at.
      */
     public void setPiece(Piece piece, Point point) {
-        updatePieces(piece, point);
-        gameBoard[point.getY()][point.getX()] = piece;
+        setTile(piece.getType(), point);
     }
 
     /**
-     * Updates the blackPieces and whitePieces HashMaps with a new piece at a given point.
+     * Sets the colour of the tile at a given point on the board.
      *
-     * @param piece The new piece to update the HashMaps with.
-     * @param point  The point on the board where the new piece is located.
+     * @param tile The colour to set the tile to.
+     * @param point The point on the board to set.
      */
-    private void updatePieces(Piece piece, Point point) {
-        if (piece.isBlack()) {
-            if (whitePieces.containsKey(point)) {
-                whitePieces.remove(point);
-            }
-            if (!blackPieces.containsKey(point)) {
-                blackPieces.put(point, piece);
-            }
+    public void setTile(Tile tile, Point point) {
+        int square = bitIndexOf(point);
+        long bit = 1L << square;
+
+        // Take whatever disc was there out of the hash before placing the new one
+        if ((blackDiscs & bit) != 0) {
+            hash ^= Zobrist.BLACK_KEYS[square];
+        }
+        else if ((whiteDiscs & bit) != 0) {
+            hash ^= Zobrist.WHITE_KEYS[square];
         }
+        blackDiscs &= ~bit;
+        whiteDiscs &= ~bit;
 
-        if (piece.isWhite()) {
-            if (!whitePieces.containsKey(point)) {
-                whitePieces.put(point, piece);
-            }
-            if (blackPieces.containsKey(point)) {
-                blackPieces.remove(point);
-            }
+        if (tile == Tile.BLACK) {
+            blackDiscs |= bit;
+            hash ^= Zobrist.BLACK_KEYS[square];
         }
+        else if (tile == Tile.WHITE) {
+            whiteDiscs |= bit;
+            hash ^= Zobrist.WHITE_KEYS[square];
+        }
+    }
 
-        if (piece.isEmpty()) {
-            if (whitePieces.containsKey(point)) {
-                whitePieces.remove(point);
-            }
-            if(blackPieces.containsKey(point)) {
-                blackPieces.remove(point);
-            }
+    /**
+     * Returns the bitboard mask of a single point.
+     *
+     * @param point The point to get the mask for.
+     * @return The mask with only the bit of the given point set.
+     * @throws IllegalArgumentException if the point is not on the board
+     */
+    private static long bitOf(Point point) {
+        return 1L << bitIndexOf(point);
+    }
+
+    /**
+     * Returns the square index of a point, rejecting the OFF_BOARD sentinel.
+     *
+     * @param point The point to get the index of.
+     * @return The square index (y * 8 + x) of the point.
+     * @throws IllegalArgumentException if the point is not on the board
+     */
+    private static int bitIndexOf(Point point) {
+        if (!point.isOnBoard()) {
+            throw new IllegalArgumentException("The coordinate is out of bounds");
         }
+        return point.getIndex();
     }
 
     /**
@@ -171,7 +341,7 @@ class Board {
      * @return The number of black pieces on the board.
      */
     public int getNumberOfBlackPieces() {
-        return blackPieces.size();
+        return Long.bitCount(blackDiscs);
     }
 
     /**
@@ -180,24 +350,135 @@ class Board {
      * @return The number of white pieces on the board.
      */
     public int getNumberOfWhitePieces() {
-        return whitePieces.size();
+        return Long.bitCount(whiteDiscs);
+    }
+
+    /**
+     * Returns the number of empty squares on the board.
+     *
+     * @return The number of empty squares on the board.
+     */
+    public int getNumberOfEmptySquares() {
+        return Long.bitCount(getEmptySquares());
+    }
+
+    /**
+     * Returns the bitboard of black discs.
+     *
+     * @return The bitboard of black discs.
+     */
+    public long getBlackDiscs() {
+        return blackDiscs;
+    }
+
+    /**
+     * Returns the bitboard of white discs.
+     *
+     * @return The bitboard of white discs.
+     */
+    public long getWhiteDiscs() {
+        return whiteDiscs;
+    }
+
+    /**
+     * Returns the bitboard of discs of a given colour.
+     *
+     * @param colour The colour of the discs.
+     * @return The bitboard of discs of the given colour, or 0 for EMPTY.
+     */
+    public long getDiscs(Tile colour) {
+        if (colour == Tile.BLACK) {
+            return blackDiscs;
+        }
+        else if (colour == Tile.WHITE) {
+            return whiteDiscs;
+        }
+        return 0L;
+    }
+
+    /**
+     * Returns the Zobrist hash of the discs on the board.
+     *
+     * @return The hash of the board, without the player to move.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position with a given player to move.
+     *
+     * @param colour The colour of the player to move.
+     * @return The hash of the position.
+     */
+    public long getHash(Tile colour) {
+        return Zobrist.withSideToMove(hash, colour);
+    }
+
+    /**
+     * Returns the bitboard of empty squares.
+     *
+     * @return The bitboard of empty squares.
+     */
+    public long getEmptySquares() {
+        return ~(blackDiscs | whiteDiscs);
+    }
+
+    /**
+     * Returns a copy of the board under one of its 8 symmetries. Only the discs are copied, not the
+     * undo history.
+     *
+     * @param transform The number of the transform (0 to 7), as in {@link Symmetry}.
+     * @return A new board with the discs rotated or reflected.
+     */
+    public Board transform(int transform) {
+        return new Board(Symmetry.transform(blackDiscs, transform), Symmetry.transform(whiteDiscs, transform));
+    }
+
+    /**
+     * Returns the canonical form of the board, shared by all 8 of its symmetric versions, and the
+     * transform that maps the board to it.
+     *
+     * @return The canonical position.
+     */
+    public CanonicalPosition canonical() {
+        return CanonicalPosition.of(blackDiscs, whiteDiscs);
     }
 
     /**
      * Returns a HashMap containing all black pieces on the board and their locations.
+     * The map is a snapshot built from the bitboard and is not updated by later moves.
      *
      * @return A HashMap containing all black pieces on the board and their locations.
      */
     public HashMap<Point, Piece> getBlackPieces() {
-        return blackPieces;
+        return piecesOf(blackDiscs, Tile.BLACK);
     }
     
     /**
      * Returns a HashMap containing all white pieces on the board and their locations.
+     * The map is a snapshot built from the bitboard and is not updated by later moves.
      *
      * @return A HashMap containing all white pieces on the board and their locations.
      */
     public HashMap<Point, Piece> getWhitePieces() {
-        return whitePieces;
+        return piecesOf(whiteDiscs, Tile.WHITE);
+    }
+
+    /**
+     * Builds a HashMap of pieces from a bitboard.
+     *
+     * @param discs The bitboard to convert.
+     * @param colour The colour of the discs in the bitboard.
+     * @return A HashMap from each occupied point to its piece.
+     */
+    private static HashMap<Point, Piece> piecesOf(long discs, Tile colour) {
+        HashMap<Point, Piece> pieces = new HashMap<Point, Piece>();
+        while (discs != 0) {
+            int square = Long.numberOfTrailingZeros(discs);
+            discs &= discs - 1;
+            pieces.put(Point.ofIndex(square), new Piece(colour));
+        }
+        return pieces;
     }
-}
\ No newline at end of file
+}
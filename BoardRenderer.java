@@ -0,0 +1,246 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Draws boards as text, in the grid format of {@link Board#toString()}.
+ *
+ * A renderer keeps one buffer that it reuses for every frame, so drawing many boards allocates nothing
+ * once the buffer has grown. It can also redraw incrementally: after the first full frame, only the cells
+ * that changed are sent, as ANSI cursor movements, instead of the whole grid.
+ * A renderer is not thread safe; give each spectator or game its own.
+ */
+class BoardRenderer {
+    private static final String TOP = "-+---+---+---+---+---+---+---+---+\n";
+    private static final String DIVIDER = "\n-+---+---+---+---+---+---+---+---|\n";
+    private static final String AXIS = " | A | B | C | D | E | F | G | H |";
+    private static final int FRAME_CAPACITY = 1024;
+
+    // What a cell shows: a disc, nothing, or the number of discs a valid move there would flip
+    private static final int CELL_BLACK = -1;
+    private static final int CELL_WHITE = -2;
+    private static final int CELL_EMPTY = 0;
+
+    // Where cells are on the screen, counting from 1 like ANSI cursor positions
+    private static final int FIRST_CELL_COLUMN = 3;
+    private static final int CELL_WIDTH = 4;
+    private static final int SCORE_LINE = 2 * Board.SIZE + 3;
+
+    private final StringBuilder buffer = new StringBuilder(FRAME_CAPACITY);
+    private final int[] cells = new int[Board.SIZE * Board.SIZE];
+    private final int[] shownCells = new int[Board.SIZE * Board.SIZE];
+    private boolean shown;
+    private int shownBlack;
+    private int shownWhite;
+
+    /**
+     * Returns the grid of a board with the number of flips of every valid move, as Board.toString does.
+     *
+     * @param board The board to draw.
+     * @param validMoves The valid moves to mark, each with the discs it flips. It may be empty.
+     * @return The grid as a string.
+     */
+    static String toString(Board board, HashMap<Point, ArrayList<Point>> validMoves) {
+        int[] cells = new int[Board.SIZE * Board.SIZE];
+        fillCells(board, validMoves, cells);
+        return appendFrame(new StringBuilder(FRAME_CAPACITY), board, cells).toString();
+    }
+
+    /**
+     * Draws a full frame.
+     *
+     * @param board The board to draw.
+     * @param hintsFor The player whose valid moves are marked with their number of flips, or EMPTY for none.
+     * @param out Where to write the frame, e.g. System.out or a StringBuilder.
+     * @throws IOException if the frame cannot be written
+     */
+    public void render(Board board, Tile hintsFor, Appendable out) throws IOException {
+        fillCells(board, hintsFor, cells);
+        buffer.setLength(0);
+        out.append(appendFrame(buffer, board, cells));
+    }
+
+    /**
+     * Draws a full frame into the renderer's buffer and returns it.
+     * The buffer is reused, so the result is only valid until the next call.
+     *
+     * @param board The board to draw.
+     * @param hintsFor The player whose valid moves are marked with their number of flips, or EMPTY for none.
+     * @return The buffer holding the frame.
+     */
+    public CharSequence render(Board board, Tile hintsFor) {
+        fillCells(board, hintsFor, cells);
+        buffer.setLength(0);
+        return appendFrame(buffer, board, cells);
+    }
+
+    /**
+     * Brings an ANSI terminal up to date with a board. The first call clears the screen and draws a full frame
+     * at the top; later calls only move the cursor to the cells that changed since the last call and redraw those,
+     * then the score line. The cursor is left on the line below the frame.
+     *
+     * @param board The board to draw.
+     * @param hintsFor The player whose valid moves are marked with their number of flips, or EMPTY for none.
+     * @param out Where to write the changes, usually System.out.
+     * @throws IOException if the changes cannot be written
+     */
+    public void renderChanges(Board board, Tile hintsFor, Appendable out) throws IOException {
+        fillCells(board, hintsFor, cells);
+        buffer.setLength(0);
+
+        if (!shown) {
+            buffer.append("\033[H\033[2J");
+            appendFrame(buffer, board, cells).append('\n');
+        }
+        else {
+            for (int square = 0; square < cells.length; square++) {
+                if (cells[square] != shownCells[square]) {
+                    moveCursor(buffer, 2 * (square / Board.SIZE) + 2, FIRST_CELL_COLUMN + CELL_WIDTH * (square % Board.SIZE));
+                    appendCell(buffer, cells[square]);
+                }
+            }
+
+            int black = board.getNumberOfBlackPieces();
+            int white = board.getNumberOfWhitePieces();
+            if (black != shownBlack || white != shownWhite) {
+                moveCursor(buffer, SCORE_LINE, 1);
+                buffer.append("\033[K");
+                appendScore(buffer, black, white);
+            }
+            moveCursor(buffer, SCORE_LINE + 1, 1);
+        }
+
+        System.arraycopy(cells, 0, shownCells, 0, cells.length);
+        shownBlack = board.getNumberOfBlackPieces();
+        shownWhite = board.getNumberOfWhitePieces();
+        shown = true;
+        out.append(buffer);
+    }
+
+    /**
+     * Forgets what is on the screen, so the next incremental redraw draws a full frame again.
+     */
+    public void reset() {
+        shown = false;
+    }
+
+    /**
+     * Works out what every cell shows, marking valid moves from a map of moves to flips.
+     *
+     * @param board The board to draw.
+     * @param validMoves The valid moves, each with the discs it flips.
+     * @param cells Where to store what each cell shows.
+     */
+    private static void fillCells(Board board, HashMap<Point, ArrayList<Point>> validMoves, int[] cells) {
+        fillDiscs(board, cells);
+        for (Map.Entry<Point, ArrayList<Point>> move : validMoves.entrySet()) {
+            cells[move.getKey().getIndex()] = move.getValue().size();
+        }
+    }
+
+    /**
+     * Works out what every cell shows, marking the valid moves of one player.
+     *
+     * @param board The board to draw.
+     * @param hintsFor The player whose valid moves are marked, or EMPTY for none.
+     * @param cells Where to store what each cell shows.
+     */
+    private static void fillCells(Board board, Tile hintsFor, int[] cells) {
+        fillDiscs(board, cells);
+        if (hintsFor == Tile.EMPTY) {
+            return;
+        }
+
+        long player = board.getDiscs(hintsFor);
+        long opponent = board.getDiscs(VaildMoves.opposite(hintsFor));
+        long moves = VaildMoves.getLegalMoves(player, opponent);
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            cells[square] = Long.bitCount(VaildMoves.flipsFor(square, player, opponent));
+            moves &= moves - 1;
+        }
+    }
+
+    /**
+     * Stores the discs of a board in the cells.
+     *
+     * @param board The board to draw.
+     * @param cells Where to store what each cell shows.
+     */
+    private static void fillDiscs(Board board, int[] cells) {
+        long black = board.getBlackDiscs();
+        long white = board.getWhiteDiscs();
+        for (int square = 0; square < cells.length; square++) {
+            long bit = 1L << square;
+            cells[square] = (black & bit) != 0 ? CELL_BLACK : (white & bit) != 0 ? CELL_WHITE : CELL_EMPTY;
+        }
+    }
+
+    /**
+     * Appends a full frame: the grid, the column letters and the score line.
+     *
+     * @param out The builder to append to.
+     * @param board The board being drawn, for the disc counts.
+     * @param cells What each cell shows.
+     * @return The builder.
+     */
+    private static StringBuilder appendFrame(StringBuilder out, Board board, int[] cells) {
+        out.append(TOP);
+        for (int y = 0; y < Board.SIZE; y++) {
+            // The row number on the left Y-axis, counting from 1 as in standard notation
+            out.append(y + 1).append('|');
+            for (int x = 0; x < Board.SIZE; x++) {
+                appendCell(out, cells[y * Board.SIZE + x]);
+                out.append('|');
+            }
+            out.append(DIVIDER);
+        }
+        out.append(AXIS).append('\n');
+        return appendScore(out, board.getNumberOfBlackPieces(), board.getNumberOfWhitePieces());
+    }
+
+    /**
+     * Appends the contents of one cell.
+     *
+     * @param out The builder to append to.
+     * @param cell What the cell shows.
+     */
+    private static void appendCell(StringBuilder out, int cell) {
+        if (cell == CELL_BLACK) {
+            out.append(" o ");
+        }
+        else if (cell == CELL_WHITE) {
+            out.append(" @ ");
+        }
+        else if (cell == CELL_EMPTY) {
+            out.append("   ");
+        }
+        else {
+            out.append(' ').append(cell).append(' ');
+        }
+    }
+
+    /**
+     * Appends the score line.
+     *
+     * @param out The builder to append to.
+     * @param black The number of black discs.
+     * @param white The number of white discs.
+     * @return The builder.
+     */
+    private static StringBuilder appendScore(StringBuilder out, int black, int white) {
+        return out.append("    Black(o): ").append(black).append("    White(@): ").append(white);
+    }
+
+    /**
+     * Appends an ANSI escape that moves the cursor.
+     *
+     * @param out The builder to append to.
+     * @param row The row to move to, counting from 1.
+     * @param column The column to move to, counting from 1.
+     */
+    private static void moveCursor(StringBuilder out, int row, int column) {
+        out.append("\033[").append(row).append(';').append(column).append('H');
+    }
+}
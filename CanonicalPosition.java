@@ -0,0 +1,127 @@
+/**
+ * A position in canonical form, with the symmetry that maps the original position to it.
+ *
+ * The 8 symmetric versions of a position (see {@link Symmetry}) all have the same canonical form,
+ * so tables keyed by it, such as the opening book and the position index, store each position once
+ * and find it from any orientation. Moves are mapped into the canonical orientation with
+ * {@link #toCanonical(Point)} before they are stored, and back with {@link #fromCanonical(Point)}
+ * when they are read. Everything works on the two bitboards, so no Board is built unless
+ * {@link #toBoard()} is called.
+ */
+final class CanonicalPosition {
+    private final long blackDiscs;
+    private final long whiteDiscs;
+    private final int transform;
+
+    /**
+     * Creates a canonical position.
+     *
+     * @param blackDiscs The bitboard of black discs in canonical form.
+     * @param whiteDiscs The bitboard of white discs in canonical form.
+     * @param transform The symmetry that maps the original position to the canonical form.
+     */
+    private CanonicalPosition(long blackDiscs, long whiteDiscs, int transform) {
+        this.blackDiscs = blackDiscs;
+        this.whiteDiscs = whiteDiscs;
+        this.transform = transform;
+    }
+
+    /**
+     * Finds the canonical form of a position: the smallest (black, white) pair of bitboards,
+     * compared as unsigned numbers, over all 8 symmetries.
+     *
+     * @param blackDiscs The bitboard of black discs.
+     * @param whiteDiscs The bitboard of white discs.
+     * @return The canonical position.
+     */
+    static CanonicalPosition of(long blackDiscs, long whiteDiscs) {
+        int transform = Symmetry.canonicalTransform(blackDiscs, whiteDiscs);
+        return new CanonicalPosition(Symmetry.transform(blackDiscs, transform), Symmetry.transform(whiteDiscs, transform), transform);
+    }
+
+    /**
+     * Returns the bitboard of black discs in canonical form.
+     *
+     * @return The bitboard of black discs.
+     */
+    long getBlackDiscs() {
+        return blackDiscs;
+    }
+
+    /**
+     * Returns the bitboard of white discs in canonical form.
+     *
+     * @return The bitboard of white discs.
+     */
+    long getWhiteDiscs() {
+        return whiteDiscs;
+    }
+
+    /**
+     * Returns the symmetry that maps the original position to the canonical form.
+     *
+     * @return The number of the transform (0 to 7).
+     */
+    int getTransform() {
+        return transform;
+    }
+
+    /**
+     * Returns the key the position is stored under in symmetry-normalised tables.
+     *
+     * @param colour The colour of the player to move.
+     * @return The Zobrist hash of the canonical position with the player to move.
+     */
+    long getHash(Tile colour) {
+        return Zobrist.hash(blackDiscs, whiteDiscs, colour);
+    }
+
+    /**
+     * Builds a board holding the canonical form.
+     *
+     * @return A new board.
+     */
+    Board toBoard() {
+        return new Board(blackDiscs, whiteDiscs);
+    }
+
+    /**
+     * Maps a square of the original position to the canonical position.
+     *
+     * @param square The square index in the original orientation.
+     * @return The square index in the canonical orientation.
+     */
+    int toCanonical(int square) {
+        return Symmetry.transformSquare(square, transform);
+    }
+
+    /**
+     * Maps a square of the canonical position back to the original position.
+     *
+     * @param square The square index in the canonical orientation.
+     * @return The square index in the original orientation.
+     */
+    int fromCanonical(int square) {
+        return Symmetry.transformSquare(square, Symmetry.inverse(transform));
+    }
+
+    /**
+     * Maps a move in the original position to the canonical position.
+     *
+     * @param move The move in the original orientation.
+     * @return The move in the canonical orientation.
+     */
+    Point toCanonical(Point move) {
+        return Point.ofIndex(toCanonical(move.getIndex()));
+    }
+
+    /**
+     * Maps a move in the canonical position back to the original position.
+     *
+     * @param move The move in the canonical orientation.
+     * @return The move in the original orientation.
+     */
+    Point fromCanonical(Point move) {
+        return Point.ofIndex(fromCanonical(move.getIndex()));
+    }
+}
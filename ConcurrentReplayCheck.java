@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that games played on many threads at once come out exactly as they do one at a time.
+ *
+ * Every game gets its own players, built from a seed, so a game is fully determined by its number.
+ * The games are played on a pool of threads, all at once, then played again one after another on
+ * the calling thread, and every move and result must match. Anything the players share by mistake,
+ * such as a static random number generator or board, makes games on different threads disturb each
+ * other and shows up as a mismatch. Search players use node budgets, so their moves do not depend
+ * on timing.
+ *
+ * Usage: java ConcurrentReplayCheck [games] [threads] [seed]
+ */
+class ConcurrentReplayCheck {
+    // Pairs of players, as in Player.fromDescription; game i uses pair i % PAIRS.length
+    private static final String[][] PAIRS = {
+        {"easy", "random"},
+        {"nodes:3000", "easy"},
+        {"nodes:2000:pattern", "random"},
+        {"easy", "easy"},
+        {"random", "nodes:1000:pattern"},
+    };
+
+    /**
+     * Plays one game.
+     *
+     * @param game The number of the game.
+     * @param seed The seed of the whole run.
+     * @return The record of the game.
+     */
+    static GameRecord playGame(int game, long seed) {
+        String[] pair = PAIRS[game % PAIRS.length];
+        long gameSeed = seed + 2L * game;
+        try (Player black = Player.fromDescription(pair[0], gameSeed); Player white = Player.fromDescription(pair[1], gameSeed + 1)) {
+            GameState state = new GameState();
+            while (!state.isGameOver()) {
+                Tile colour = state.getCurrentPlayer();
+                state.play((colour == Tile.BLACK ? black : white).chooseMove(state.getBoard(), colour));
+            }
+            return state.toRecord(black.getName(), white.getName());
+        }
+    }
+
+    /**
+     * Plays the games on a pool of threads.
+     *
+     * @param games The number of games.
+     * @param threads The number of threads.
+     * @param seed The seed of the run.
+     * @return The records of the games, in game order.
+     * @throws InterruptedException if interrupted while waiting for the games
+     * @throws ExecutionException if a game fails
+     */
+    static List<GameRecord> playConcurrently(int games, int threads, long seed) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<GameRecord>> futures = new ArrayList<Future<GameRecord>>();
+            for (int game = 0; game < games; game++) {
+                int number = game;
+                futures.add(pool.submit(() -> playGame(number, seed)));
+            }
+
+            List<GameRecord> records = new ArrayList<GameRecord>();
+            for (Future<GameRecord> future : futures) {
+                records.add(future.get());
+            }
+            return records;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        long start = System.nanoTime();
+        List<GameRecord> concurrent = playConcurrently(games, threads, seed);
+        long concurrentMillis = (System.nanoTime() - start) / 1_000_000;
+
+        int mismatches = 0;
+        for (int game = 0; game < games; game++) {
+            GameRecord sequential = playGame(game, seed);
+            GameRecord record = concurrent.get(game);
+            GameState replay = record.replay(record.getPlies());
+            boolean consistent = replay.isGameOver() && replay.getBoard().getNumberOfBlackPieces() == record.getBlackDiscs()
+                && replay.getBoard().getNumberOfWhitePieces() == record.getWhiteDiscs();
+
+            if (!record.equals(sequential) || !consistent) {
+                mismatches++;
+                System.out.println("Game " + game + " does not match its sequential replay:");
+                System.out.println("  concurrent: " + record);
+                System.out.println("  sequential: " + sequential);
+            }
+        }
+
+        System.out.printf("%d games on %d threads in %d ms: %d mismatches%n", games, threads, concurrentMillis, mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Plays the easy AI from {@link AI#makeMove(Board, java.util.HashMap)}.
+ */
+class EasyAIPlayer implements Player {
+    private final AI ai;
+
+    /**
+     * Constructor for EasyAIPlayer class.
+     *
+     * @param seed The seed of the AI's random choices.
+     */
+    public EasyAIPlayer(long seed) {
+        this.ai = new AI(seed);
+    }
+
+    /**
+     * Chooses a move with the easy AI.
+     *
+     * @param board The current state of the board.
+     * @param colour The colour the player is playing.
+     * @return The move the easy AI picks.
+     */
+    @Override
+    public Point chooseMove(Board board, Tile colour) {
+        return ai.chooseMove(board, new VaildMoves(board).getValidPlayerMoves(colour));
+    }
+
+    /**
+     * Returns the name of this player.
+     *
+     * @return The name of this player.
+     */
+    @Override
+    public String getName() {
+        return "easy";
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.Random;
+
+/**
+ * Times the endgame solver on a fixed set of positions with a given number of empty squares,
+ * and fails if the average solve takes longer than a limit.
+ *
+ * Usage: java EndgameBenchmark [empty squares] [positions] [limit in milliseconds]
+ */
+class EndgameBenchmark {
+    private static final long FIRST_SEED = 1;
+
+    /**
+     * Plays random moves from the starting position until a given number of squares are empty.
+     *
+     * @param random The source of the random moves.
+     * @param empties The number of empty squares to stop at.
+     * @return The position, or null if the game ended first.
+     */
+    private static GameState randomPosition(Random random, int empties) {
+        GameState game = new GameState();
+        while (!game.isGameOver() && game.getBoard().getNumberOfEmptySquares() > empties) {
+            long moves = game.getLegalMoves();
+            for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                moves &= moves - 1;
+            }
+            game.play(Point.ofIndex(Long.numberOfTrailingZeros(moves)));
+        }
+        return game.isGameOver() ? null : game;
+    }
+
+    public static void main(String[] args) {
+        int empties = args.length > 0 ? Integer.parseInt(args[0]) : EndgameSolver.DEFAULT_THRESHOLD;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long limitMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        GameState[] positions = new GameState[count];
+        Random random = new Random(FIRST_SEED);
+        for (int i = 0; i < count; i++) {
+            do {
+                positions[i] = randomPosition(random, empties);
+            } while (positions[i] == null);
+        }
+
+        // Warm up on smaller endgames, so the JIT has compiled the solver before it is timed
+        EndgameSolver solver = new EndgameSolver();
+        Random warmup = new Random(FIRST_SEED + 1);
+        for (int i = 0; i < count; i++) {
+            GameState position = randomPosition(warmup, Math.max(0, empties - 4));
+            if (position != null) {
+                solver.solve(position.getBoard(), position.getCurrentPlayer(), 0, 0);
+            }
+        }
+
+        System.out.println("position  score  best     nodes     ms   nodes/s");
+        long totalNodes = 0;
+        long totalMillis = 0;
+        long maxMillis = 0;
+        for (int i = 0; i < count; i++) {
+            SearchResult result = solver.solve(positions[i].getBoard(), positions[i].getCurrentPlayer(), 0, 0);
+            long millis = result.getElapsedMillis();
+            totalNodes += result.getNodes();
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            System.out.printf("%8d  %+5d  %4s  %10d  %5d  %8d%n", i + 1, result.getScore(), result.getBestMove(),
+                result.getNodes(), millis, result.getNodes() * 1000 / Math.max(1, millis));
+        }
+
+        long averageMillis = totalMillis / count;
+        System.out.printf("%d empties: average %d ms, max %d ms, %d nodes/s%n", empties, averageMillis, maxMillis,
+            totalNodes * 1000 / Math.max(1, totalMillis));
+        if (averageMillis > limitMillis) {
+            System.out.printf("FAILED: the average solve took longer than %d ms%n", limitMillis);
+            System.exit(1);
+        }
+        System.out.printf("OK: the average solve took at most %d ms%n", limitMillis);
+    }
+}
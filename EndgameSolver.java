@@ -0,0 +1,661 @@
+/**
+ * Solves endgame positions exactly: finds the move that ends the game with the best possible disc difference.
+ *
+ * The solver works directly on a pair of bitboards and never allocates while searching.
+ * Moves are tried fastest-first (the move that leaves the opponent the fewest replies) while many squares
+ * are empty, and in quadrant-parity order near the end, where sorting costs more than it saves.
+ * The last five empty squares are handled by dedicated routines that skip move generation.
+ * Nodes with many empty squares are remembered in a transposition table, under a Zobrist hash that is
+ * updated with each move rather than recomputed, and every move after the first is tried with a null window
+ * that only asks whether it beats the best move so far. EndgameBenchmark times it.
+ */
+class EndgameSolver {
+    // Positions with this many empty squares or fewer are handed to the solver by default; most of them
+    // solve in under a second, and SearchEngine falls back to its own search for any that take too long
+    static final int DEFAULT_THRESHOLD = 20;
+
+    // Above this many empty squares, moves are sorted by the opponent's mobility
+    private static final int FASTEST_FIRST_EMPTIES = 5;
+
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final int MOBILITY_ORDER_WEIGHT = 16;
+    private static final int POTENTIAL_MOBILITY_ORDER_WEIGHT = 2;
+    private static final int CORNER_ORDER_WEIGHT = 16;
+
+    // Nodes with at least this many empty squares are looked up in the transposition table
+    private static final int TABLE_EMPTIES = 8;
+
+    private static final int TABLE_MEGABYTES = 16;
+
+
+    private static final int CLOCK_CHECK_INTERVAL = 4096;
+
+    private static final int NO_SCORE = -Board.SIZE * Board.SIZE - 1;
+
+    // How high alpha must be, by number of empty squares, before it is worth checking whether the
+    // opponent's stable discs already rule out beating it
+    private static final int[] STABILITY_THRESHOLD = {
+        99, 99, 99, 99, 6, 8, 10, 12, 14, 16, 20, 22, 24, 26, 28, 30, 32, 34, 36, 38, 40,
+        42, 44, 46, 48, 48, 50, 50, 52, 52, 54, 54, 56, 56, 58, 58, 60, 60, 62, 62, 64,
+        64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64,
+        64, 64, 64, 64
+    };
+
+    private static final long[] QUADRANTS = {
+        0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+    private static final long[] QUADRANT_OF = new long[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            for (long quadrant : QUADRANTS) {
+                if ((quadrant & (1L << square)) != 0) {
+                    QUADRANT_OF[square] = quadrant;
+                }
+            }
+        }
+    }
+
+    // Move lists for each number of empty squares, reused instead of allocated per node; a position
+    // cannot have more legal moves than empty squares, so each list is as long as its number of empties
+    private final int[][] moveSquares = new int[Board.SIZE * Board.SIZE + 1][];
+    private final int[][] moveKeys = new int[Board.SIZE * Board.SIZE + 1][];
+    private final long[][] moveFlips = new long[Board.SIZE * Board.SIZE + 1][];
+
+    private final TranspositionTable table;
+
+    private long nodes;
+
+    // Counted for EngineMetrics: move generations, including those for move ordering, and the legal moves they found
+    private long moveGenerations;
+    private long movesGenerated;
+    private long deadline;
+    private long nodeLimit;
+    private boolean stopped;
+
+    /**
+     * Creates a solver with its own transposition table.
+     */
+    public EndgameSolver() {
+        this(new TranspositionTable(TABLE_MEGABYTES));
+    }
+
+    /**
+     * Creates a solver that uses a given transposition table.
+     *
+     * @param table The transposition table to remember solved positions in.
+     */
+    public EndgameSolver(TranspositionTable table) {
+        this.table = table;
+        for (int empties = 0; empties < moveSquares.length; empties++) {
+            moveSquares[empties] = new int[empties];
+            moveKeys[empties] = new int[empties];
+            moveFlips[empties] = new long[empties];
+        }
+    }
+
+    /**
+     * Solves a position exactly.
+     *
+     * @param position The position to solve. It is never modified.
+     * @param colour The colour of the player to move.
+     * @param timeLimitMillis The time budget in milliseconds, or 0 for no time limit.
+     * @param nodeLimit The node budget, or 0 for no node limit.
+     * @return The best move and the final disc difference for the player to move (marked exact),
+     *         or a result marked inexact if the budget ran out first.
+     */
+    public SearchResult solve(Board position, Tile colour, long timeLimitMillis, long nodeLimit) {
+        long startNanos = System.nanoTime();
+        long probes = table.getProbes();
+        long hits = table.getHits();
+        SearchResult result = solveRoot(position, colour, timeLimitMillis, nodeLimit);
+        EngineMetrics.record("endgame", System.nanoTime() - startNanos, result.getDepth(), result.getNodes(),
+            table.getProbes() - probes, table.getHits() - hits, moveGenerations, movesGenerated);
+        return result;
+    }
+
+    /**
+     * Solves a position exactly, trying each root move with a null window after the first.
+     *
+     * @param position The position to solve. It is never modified.
+     * @param colour The colour of the player to move.
+     * @param timeLimitMillis The time budget in milliseconds, or 0 for no time limit.
+     * @param nodeLimit The node budget, or 0 for no node limit.
+     * @return The result, as for {@link #solve(Board, Tile, long, long)}.
+     */
+    private SearchResult solveRoot(Board position, Tile colour, long timeLimitMillis, long nodeLimit) {
+        long start = System.currentTimeMillis();
+        long player = position.getDiscs(colour);
+        long opponent = position.getDiscs(VaildMoves.opposite(colour));
+
+        this.deadline = timeLimitMillis > 0 ? start + timeLimitMillis : Long.MAX_VALUE;
+        this.nodeLimit = nodeLimit > 0 ? nodeLimit : Long.MAX_VALUE;
+        this.nodes = 0;
+        this.stopped = false;
+        table.newSearch();
+
+        long moves = VaildMoves.getLegalMoves(player, opponent);
+        this.moveGenerations = 1;
+        this.movesGenerated = Long.bitCount(moves);
+        if (moves == 0) {
+            return new SearchResult(null, 0, 0, 0, System.currentTimeMillis() - start);
+        }
+
+        int empties = Long.bitCount(~(player | opponent));
+        int count = orderMoves(player, opponent, moves, empties, TranspositionTable.NO_MOVE);
+        int[] squares = moveSquares[empties];
+        boolean black = colour == Tile.BLACK;
+        long hash = position.getHash(colour);
+
+        int alpha = NO_SCORE;
+        int bestSquare = squares[0];
+        for (int i = 0; i < count; i++) {
+            int square = squares[i];
+            long flips = VaildMoves.flipsFor(square, player, opponent);
+            long nextPlayer = opponent & ~flips;
+            long nextOpponent = player | flips | (1L << square);
+            long nextHash = childHash(hash, black, square, flips);
+
+            int score;
+            if (i == 0) {
+                score = -solve(nextPlayer, nextOpponent, nextHash, !black, -Board.SIZE * Board.SIZE, Board.SIZE * Board.SIZE, false);
+            }
+            else {
+                score = -solve(nextPlayer, nextOpponent, nextHash, !black, -alpha - 1, -alpha, false);
+                if (score > alpha && !stopped) {
+                    score = -solve(nextPlayer, nextOpponent, nextHash, !black, -Board.SIZE * Board.SIZE, -alpha, false);
+                }
+            }
+
+            if (stopped) {
+                return new SearchResult(Point.ofIndex(bestSquare), 0, 0, nodes, System.currentTimeMillis() - start);
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestSquare = square;
+            }
+        }
+
+        return new SearchResult(Point.ofIndex(bestSquare), alpha, empties, nodes, System.currentTimeMillis() - start, true);
+    }
+
+    /**
+     * Returns the exact final disc difference of a position with alpha-beta bounds.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param hash The Zobrist hash of the position with the player to move, kept up to date move by move;
+     *             only used, and only kept up to date, with TABLE_EMPTIES or more empty squares.
+     * @param black True if the player to move is black.
+     * @param alpha The lower bound of the search window.
+     * @param beta The upper bound of the search window.
+     * @param passed True if the previous player had to pass.
+     * @return The final disc difference from the point of view of the player to move.
+     */
+    private int solve(long player, long opponent, long hash, boolean black, int alpha, int beta, boolean passed) {
+        long empty = ~(player | opponent);
+        int empties = Long.bitCount(empty);
+
+        if (empties == 3) {
+            int first = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            int second = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            return solve3(player, opponent, alpha, beta, first, second, Long.numberOfTrailingZeros(empty), false);
+        }
+        if (empties < 3) {
+            return solveShallow(player, opponent, alpha, beta, empty, empties);
+        }
+        if (empties <= FASTEST_FIRST_EMPTIES) {
+            return solveNearEnd(player, opponent, alpha, beta, passed);
+        }
+
+        nodes++;
+        if (nodes % CLOCK_CHECK_INTERVAL == 0) {
+            checkBudget();
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        // The opponent keeps its stable discs, which caps how well the player can do
+        if (alpha >= STABILITY_THRESHOLD[empties]) {
+            int upperBound = Board.SIZE * Board.SIZE - 2 * Stability.countStable(opponent, player);
+            if (upperBound <= alpha) {
+                return upperBound;
+            }
+        }
+
+        long moves = VaildMoves.getLegalMoves(player, opponent);
+        moveGenerations++;
+        movesGenerated += Long.bitCount(moves);
+        if (moves == 0) {
+            if (passed) {
+                return discDifference(player, opponent);
+            }
+            return -solve(opponent, player, hash ^ Zobrist.WHITE_TO_MOVE, !black, -beta, -alpha, true);
+        }
+
+        int tableMove = TranspositionTable.NO_MOVE;
+        if (empties >= TABLE_EMPTIES) {
+            long entry = table.probe(hash);
+            if (entry != TranspositionTable.MISS) {
+                tableMove = TranspositionTable.move(entry);
+                int stored = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT) {
+                    return stored;
+                }
+                else if (bound == TranspositionTable.BOUND_LOWER) {
+                    alpha = Math.max(alpha, stored);
+                }
+                else {
+                    beta = Math.min(beta, stored);
+                }
+                if (alpha >= beta) {
+                    return stored;
+                }
+            }
+        }
+
+        int originalAlpha = alpha;
+        int count = orderMoves(player, opponent, moves, empties, tableMove);
+        int[] squares = moveSquares[empties];
+        long[] flipsList = moveFlips[empties];
+
+        int best = NO_SCORE;
+        int bestSquare = TranspositionTable.NO_MOVE;
+
+        for (int i = 0; i < count; i++) {
+            int square = squares[i];
+            long flips = empties > FASTEST_FIRST_EMPTIES ? flipsList[i] : VaildMoves.flipsFor(square, player, opponent);
+            long nextPlayer = opponent & ~flips;
+            long nextOpponent = player | flips | (1L << square);
+            long nextHash = empties > TABLE_EMPTIES ? childHash(hash, black, square, flips) : 0L;
+
+            int score;
+            if (i == 0) {
+                score = -solve(nextPlayer, nextOpponent, nextHash, !black, -beta, -alpha, false);
+            }
+            else {
+                // Later moves only need to be proven worse, which a null window does cheaply
+                score = -solve(nextPlayer, nextOpponent, nextHash, !black, -alpha - 1, -alpha, false);
+                if (score > alpha && score < beta) {
+                    score = -solve(nextPlayer, nextOpponent, nextHash, !black, -beta, -score, false);
+                }
+            }
+
+            if (score > best) {
+                best = score;
+                bestSquare = square;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (empties >= TABLE_EMPTIES && !stopped) {
+            int bound = best <= originalAlpha ? TranspositionTable.BOUND_UPPER
+                : best >= beta ? TranspositionTable.BOUND_LOWER : TranspositionTable.BOUND_EXACT;
+            table.store(hash, empties, best, bound, bestSquare);
+        }
+        return best;
+    }
+
+    /**
+     * Fills the move list for a node in the order the moves should be tried. With more than
+     * FASTEST_FIRST_EMPTIES empty squares the flips of each move are worked out for the ordering,
+     * and kept in the node's flip list so the search does not work them out again.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param moves The bitboard of legal moves.
+     * @param empties The number of empty squares, which selects the move list to fill.
+     * @param tableMove The best move stored in the transposition table, which goes first, or NO_MOVE.
+     * @return The number of moves in the list.
+     */
+    private int orderMoves(long player, long opponent, long moves, int empties, int tableMove) {
+        int[] squares = moveSquares[empties];
+        int[] keys = moveKeys[empties];
+        long[] flipsList = moveFlips[empties];
+        long empty = ~(player | opponent);
+        int count = 0;
+
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+
+            // Moves into a quadrant with an odd number of empty squares tend to get the last move there
+            int key = Long.bitCount(empty & QUADRANT_OF[square]) & 1;
+            long flips = 0L;
+            if (empties > FASTEST_FIRST_EMPTIES) {
+                flips = VaildMoves.flipsFor(square, player, opponent);
+                if (square == tableMove) {
+                    key = Integer.MAX_VALUE;
+                }
+                else {
+                    // Fastest-first: leave the opponent as few replies as possible, counting corner replies twice,
+                    // and take corners early
+                    long replies = VaildMoves.getLegalMoves(opponent & ~flips, player | flips | (1L << square));
+                    moveGenerations++;
+                    movesGenerated += Long.bitCount(replies);
+                    key -= (Long.bitCount(replies) + Long.bitCount(replies & CORNERS)) * MOBILITY_ORDER_WEIGHT;
+                    key -= Long.bitCount(neighbours(player | flips | (1L << square)) & empty) * POTENTIAL_MOBILITY_ORDER_WEIGHT;
+                    if ((CORNERS & (1L << square)) != 0) {
+                        key += CORNER_ORDER_WEIGHT;
+                    }
+                }
+            }
+            else if (square == tableMove) {
+                key = Integer.MAX_VALUE;
+            }
+
+            // Insertion sort, highest key first
+            int i = count++;
+            while (i > 0 && keys[i - 1] < key) {
+                squares[i] = squares[i - 1];
+                keys[i] = keys[i - 1];
+                flipsList[i] = flipsList[i - 1];
+                i--;
+            }
+            squares[i] = square;
+            keys[i] = key;
+            flipsList[i] = flips;
+        }
+        return count;
+    }
+
+    /**
+     * Solves a position with a few empty squares, from FASTEST_FIRST_EMPTIES down to four, without
+     * generating moves: each empty square is tried in quadrant-parity order and skipped if it flips nothing.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param alpha The lower bound of the search window.
+     * @param beta The upper bound of the search window.
+     * @param passed True if the previous player had to pass.
+     * @return The final disc difference from the point of view of the player to move.
+     */
+    private int solveNearEnd(long player, long opponent, int alpha, int beta, boolean passed) {
+        long empty = ~(player | opponent);
+        int empties = Long.bitCount(empty);
+
+        nodes++;
+        if (nodes % CLOCK_CHECK_INTERVAL == 0) {
+            checkBudget();
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        if (alpha >= STABILITY_THRESHOLD[empties]) {
+            int upperBound = Board.SIZE * Board.SIZE - 2 * Stability.countStable(opponent, player);
+            if (upperBound <= alpha) {
+                return upperBound;
+            }
+        }
+
+        // Squares in quadrants with an odd number of empty squares go first
+        long odd = 0L;
+        for (long quadrant : QUADRANTS) {
+            if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                odd |= quadrant;
+            }
+        }
+        long squares = empty & odd;
+        long later = empty & ~odd;
+
+        int best = NO_SCORE;
+        while (squares != 0 || later != 0) {
+            if (squares == 0) {
+                squares = later;
+                later = 0L;
+            }
+            int square = Long.numberOfTrailingZeros(squares);
+            squares &= squares - 1;
+
+            long flips = VaildMoves.flipsFor(square, player, opponent);
+            if (flips == 0) {
+                continue;
+            }
+            long nextPlayer = opponent & ~flips;
+            long nextOpponent = player | flips | (1L << square);
+
+            int score;
+            if (empties == 4) {
+                long rest = empty & ~(1L << square);
+                int first = Long.numberOfTrailingZeros(rest);
+                rest &= rest - 1;
+                int second = Long.numberOfTrailingZeros(rest);
+                rest &= rest - 1;
+                score = -solve3(nextPlayer, nextOpponent, -beta, -alpha, first, second, Long.numberOfTrailingZeros(rest), false);
+            }
+            else {
+                score = -solveNearEnd(nextPlayer, nextOpponent, -beta, -alpha, false);
+            }
+
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (best == NO_SCORE) {
+            if (passed) {
+                return discDifference(player, opponent);
+            }
+            return -solveNearEnd(opponent, player, -beta, -alpha, true);
+        }
+        return best;
+    }
+
+    /**
+     * Solves a position with three empty squares without generating moves.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param alpha The lower bound of the search window.
+     * @param beta The upper bound of the search window.
+     * @param first The first empty square.
+     * @param second The second empty square.
+     * @param third The third empty square.
+     * @param passed True if the previous player had to pass.
+     * @return The final disc difference from the point of view of the player to move.
+     */
+    private int solve3(long player, long opponent, int alpha, int beta, int first, int second, int third, boolean passed) {
+        nodes++;
+
+        // Play the square that is alone in its quadrant first
+        if (QUADRANT_OF[first] == QUADRANT_OF[second]) {
+            int swap = first;
+            first = third;
+            third = swap;
+        }
+        else if (QUADRANT_OF[first] == QUADRANT_OF[third]) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+
+        int best = NO_SCORE;
+        long flips = VaildMoves.flipsFor(first, player, opponent);
+        if (flips != 0) {
+            best = -solve2(opponent & ~flips, player | flips | (1L << first), -beta, -alpha, second, third, false);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+
+        flips = VaildMoves.flipsFor(second, player, opponent);
+        if (flips != 0) {
+            int score = -solve2(opponent & ~flips, player | flips | (1L << second), -beta, -alpha, first, third, false);
+            if (score >= beta) {
+                return score;
+            }
+            if (score > best) {
+                best = score;
+                alpha = Math.max(alpha, score);
+            }
+        }
+
+        flips = VaildMoves.flipsFor(third, player, opponent);
+        if (flips != 0) {
+            int score = -solve2(opponent & ~flips, player | flips | (1L << third), -beta, -alpha, first, second, false);
+            if (score > best) {
+                best = score;
+            }
+        }
+
+        if (best == NO_SCORE) {
+            if (passed) {
+                return discDifference(player, opponent);
+            }
+            return -solve3(opponent, player, -beta, -alpha, first, second, third, true);
+        }
+        return best;
+    }
+
+    /**
+     * Solves a position with two empty squares without generating moves.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param alpha The lower bound of the search window.
+     * @param beta The upper bound of the search window.
+     * @param first The first empty square.
+     * @param second The second empty square.
+     * @param passed True if the previous player had to pass.
+     * @return The final disc difference from the point of view of the player to move.
+     */
+    private int solve2(long player, long opponent, int alpha, int beta, int first, int second, boolean passed) {
+        nodes++;
+
+        int best = NO_SCORE;
+        long flips = VaildMoves.flipsFor(first, player, opponent);
+        if (flips != 0) {
+            best = -solve1(opponent & ~flips, player | flips | (1L << first), second);
+            if (best >= beta) {
+                return best;
+            }
+        }
+
+        flips = VaildMoves.flipsFor(second, player, opponent);
+        if (flips != 0) {
+            int score = -solve1(opponent & ~flips, player | flips | (1L << second), first);
+            if (score > best) {
+                best = score;
+            }
+        }
+
+        if (best == NO_SCORE) {
+            if (passed) {
+                return discDifference(player, opponent);
+            }
+            return -solve2(opponent, player, -beta, -alpha, first, second, true);
+        }
+        return best;
+    }
+
+    /**
+     * Solves a position with one empty square without generating moves.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param square The empty square.
+     * @return The final disc difference from the point of view of the player to move.
+     */
+    private int solve1(long player, long opponent, int square) {
+        nodes++;
+        int difference = discDifference(player, opponent);
+
+        int flipped = Long.bitCount(VaildMoves.flipsFor(square, player, opponent));
+        if (flipped > 0) {
+            return difference + 2 * flipped + 1;
+        }
+
+        // The player has to pass, so the opponent gets the last square if it can use it
+        flipped = Long.bitCount(VaildMoves.flipsFor(square, opponent, player));
+        if (flipped > 0) {
+            return difference - 2 * flipped - 1;
+        }
+        return difference;
+    }
+
+    /**
+     * Solves a position with fewer than three empty squares.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param alpha The lower bound of the search window.
+     * @param beta The upper bound of the search window.
+     * @param empty The bitboard of empty squares.
+     * @param empties The number of empty squares.
+     * @return The final disc difference from the point of view of the player to move.
+     */
+    private int solveShallow(long player, long opponent, int alpha, int beta, long empty, int empties) {
+        if (empties == 2) {
+            int first = Long.numberOfTrailingZeros(empty);
+            return solve2(player, opponent, alpha, beta, first, Long.numberOfTrailingZeros(empty & (empty - 1)), false);
+        }
+        if (empties == 1) {
+            return solve1(player, opponent, Long.numberOfTrailingZeros(empty));
+        }
+        nodes++;
+        return discDifference(player, opponent);
+    }
+
+    /**
+     * Returns every square next to at least one disc of a bitboard.
+     *
+     * @param discs The discs to look around.
+     * @return The bitboard of neighbouring squares, which may include the discs themselves.
+     */
+    private static long neighbours(long discs) {
+        long east = (discs << 1 | discs >>> 7 | discs << 9) & ~VaildMoves.FILE_A;
+        long west = (discs >>> 1 | discs << 7 | discs >>> 9) & ~VaildMoves.FILE_H;
+        return east | west | discs << 8 | discs >>> 8;
+    }
+
+    /**
+     * Returns the hash of the position after a move.
+     *
+     * @param hash The hash of the position before the move, with the player to move.
+     * @param black True if the player making the move is black.
+     * @param square The square played.
+     * @param flips The discs the move flips.
+     * @return The hash of the position after the move, with the other player to move.
+     */
+    private static long childHash(long hash, boolean black, int square, long flips) {
+        long placed = black ? Zobrist.BLACK_KEYS[square] : Zobrist.WHITE_KEYS[square];
+        return hash ^ placed ^ Zobrist.flipKey(flips) ^ Zobrist.WHITE_TO_MOVE;
+    }
+
+    /**
+     * Returns the disc difference of a position.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @return The number of player discs minus the number of opponent discs.
+     */
+    private static int discDifference(long player, long opponent) {
+        return Long.bitCount(player) - Long.bitCount(opponent);
+    }
+
+    /**
+     * Stops the solver once the time or node budget is spent.
+     */
+    private void checkBudget() {
+        if (nodes >= nodeLimit || System.currentTimeMillis() >= deadline) {
+            stopped = true;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects what the engines do on every move, for JMX and Flight Recorder.
+ *
+ * Every engine reports each move it chooses to {@link #record}, with its thinking time, depth,
+ * nodes, transposition table probes and hits, and how often it generated moves. Each report is
+ * committed as a {@link MoveEvent} when Flight Recorder is recording that event, and added to the
+ * JMX counters when they have been enabled with {@link #enable()}. When neither is on, a report
+ * returns straight away; the engines only keep the plain counters they need for the reports,
+ * so searching costs the same either way.
+ *
+ * Set the system property othello.metrics to true to have the command-line tools enable JMX.
+ */
+class EngineMetrics implements EngineMetricsMBean {
+    static final String OBJECT_NAME = "othello:type=EngineMetrics";
+
+    private static final EngineMetrics INSTANCE = new EngineMetrics();
+    private static volatile boolean enabled;
+
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder depths = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder tableProbes = new LongAdder();
+    private final LongAdder tableHits = new LongAdder();
+    private final LongAdder moveGenerations = new LongAdder();
+    private final LongAdder movesGenerated = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    private volatile int lastDepth;
+    private volatile long lastNanos;
+
+    /**
+     * Returns the metrics shared by every engine in this JVM.
+     *
+     * @return The metrics.
+     */
+    static EngineMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts collecting the JMX counters and registers them with the platform MBean server.
+     * Calling it again does nothing.
+     *
+     * @throws IllegalStateException if the MBean cannot be registered
+     */
+    static synchronized void enable() {
+        if (enabled) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+        enabled = true;
+    }
+
+    /**
+     * Enables the JMX counters if the system property othello.metrics is true.
+     */
+    static void enableIfRequested() {
+        if (Boolean.getBoolean("othello.metrics")) {
+            enable();
+        }
+    }
+
+    /**
+     * Returns whether the JMX counters are being collected.
+     *
+     * @return True if they have been enabled.
+     */
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns whether reports are being used, by JMX or by a Flight Recorder recording of {@link MoveEvent}.
+     * Engines whose moves take less time than reading the clock check this before timing a move.
+     *
+     * @return True if a report would be counted or committed.
+     */
+    static boolean isRecording() {
+        return enabled || new MoveEvent().isEnabled();
+    }
+
+    /**
+     * Reports a move chosen by an engine.
+     *
+     * @param engine The kind of engine, e.g. "search" or "endgame".
+     * @param thinkingNanos How long the engine took to choose the move.
+     * @param depth The depth reached in plies.
+     * @param searchedNodes The nodes searched.
+     * @param probes The transposition table probes made.
+     * @param hits The probes that found an entry.
+     * @param generations How many times moves were generated.
+     * @param generated The total number of legal moves those generations found.
+     */
+    static void record(String engine, long thinkingNanos, int depth, long searchedNodes, long probes, long hits, long generations, long generated) {
+        MoveEvent event = new MoveEvent();
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.thinkingTime = thinkingNanos;
+            event.depth = depth;
+            event.nodes = searchedNodes;
+            event.nodesPerSecond = thinkingNanos > 0 ? searchedNodes * 1_000_000_000L / thinkingNanos : 0;
+            event.tableProbes = probes;
+            event.tableHitRate = probes > 0 ? (double) hits / probes : 0;
+            event.branchingFactor = generations > 0 ? (double) generated / generations : 0;
+            event.moveGenerations = generations;
+            event.commit();
+        }
+
+        if (enabled) {
+            EngineMetrics metrics = INSTANCE;
+            metrics.moves.increment();
+            metrics.nodes.add(searchedNodes);
+            metrics.depths.add(depth);
+            metrics.nanos.add(thinkingNanos);
+            metrics.tableProbes.add(probes);
+            metrics.tableHits.add(hits);
+            metrics.moveGenerations.add(generations);
+            metrics.movesGenerated.add(generated);
+            metrics.maxNanos.accumulate(thinkingNanos);
+            metrics.lastDepth = depth;
+            metrics.lastNanos = thinkingNanos;
+        }
+    }
+
+    /**
+     * Returns how many moves have been chosen.
+     *
+     * @return The number of moves.
+     */
+    @Override
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    /**
+     * Returns how many nodes have been searched.
+     *
+     * @return The number of nodes.
+     */
+    @Override
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    /**
+     * Returns the search speed.
+     *
+     * @return The nodes searched per second of thinking time.
+     */
+    @Override
+    public double getNodesPerSecond() {
+        return ratio(nodes.sum() * 1e9, nanos.sum());
+    }
+
+    /**
+     * Returns the average depth reached.
+     *
+     * @return The average depth of a move's search in plies.
+     */
+    @Override
+    public double getAverageDepth() {
+        return ratio(depths.sum(), moves.sum());
+    }
+
+    /**
+     * Returns the depth reached by the last move's search.
+     *
+     * @return The depth in plies.
+     */
+    @Override
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    /**
+     * Returns the share of transposition table probes that found an entry.
+     *
+     * @return The hit rate from 0 to 1.
+     */
+    @Override
+    public double getTranspositionHitRate() {
+        return ratio(tableHits.sum(), tableProbes.sum());
+    }
+
+    /**
+     * Returns the average number of legal moves found each time the engines generated moves.
+     *
+     * @return The branching factor.
+     */
+    @Override
+    public double getBranchingFactor() {
+        return ratio(movesGenerated.sum(), moveGenerations.sum());
+    }
+
+    /**
+     * Returns the average time taken to choose a move.
+     *
+     * @return The time per move in milliseconds.
+     */
+    @Override
+    public double getAverageMoveMillis() {
+        return ratio(nanos.sum() / 1e6, moves.sum());
+    }
+
+    /**
+     * Returns the time taken to choose the last move.
+     *
+     * @return The time in milliseconds.
+     */
+    @Override
+    public double getLastMoveMillis() {
+        return lastNanos / 1e6;
+    }
+
+    /**
+     * Returns the longest time taken to choose a move.
+     *
+     * @return The time in milliseconds.
+     */
+    @Override
+    public double getMaxMoveMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * Returns the average number of times moves were generated while choosing a move.
+     *
+     * @return The move generation calls per move.
+     */
+    @Override
+    public double getMoveGenerationsPerMove() {
+        return ratio(moveGenerations.sum(), moves.sum());
+    }
+
+    /**
+     * Clears every counter.
+     */
+    @Override
+    public void reset() {
+        moves.reset();
+        nodes.reset();
+        depths.reset();
+        nanos.reset();
+        tableProbes.reset();
+        tableHits.reset();
+        moveGenerations.reset();
+        movesGenerated.reset();
+        maxNanos.reset();
+        lastDepth = 0;
+        lastNanos = 0;
+    }
+
+    /**
+     * Divides two totals.
+     *
+     * @param total The numerator.
+     * @param count The denominator.
+     * @return The ratio, or 0 if the denominator is 0.
+     */
+    private static double ratio(double total, double count) {
+        return count > 0 ? total / count : 0;
+    }
+
+    /**
+     * Returns a one-line summary of the counters.
+     *
+     * @return The summary.
+     */
+    @Override
+    public String toString() {
+        return String.format("%d moves: %.0f nodes/s, depth %.1f, TT hit rate %.1f%%, branching %.2f, %.2f ms/move (max %.2f), %.0f move generations/move",
+            getMoves(), getNodesPerSecond(), getAverageDepth(), 100 * getTranspositionHitRate(), getBranchingFactor(),
+            getAverageMoveMillis(), getMaxMoveMillis(), getMoveGenerationsPerMove());
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * The management interface of {@link EngineMetrics}, as shown by JMX consoles such as JConsole.
+ *
+ * JMX only reads public interfaces, so unlike the rest of the engine this one is public.
+ * Averages and rates are over every move since the metrics were enabled or last reset.
+ */
+public interface EngineMetricsMBean {
+    /**
+     * Returns how many moves have been chosen.
+     *
+     * @return The number of moves.
+     */
+    long getMoves();
+
+    /**
+     * Returns how many nodes have been searched.
+     *
+     * @return The number of nodes.
+     */
+    long getNodes();
+
+    /**
+     * Returns the search speed.
+     *
+     * @return The nodes searched per second of thinking time.
+     */
+    double getNodesPerSecond();
+
+    /**
+     * Returns the average depth reached.
+     *
+     * @return The average depth of a move's search in plies.
+     */
+    double getAverageDepth();
+
+    /**
+     * Returns the depth reached by the last move's search.
+     *
+     * @return The depth in plies.
+     */
+    int getLastDepth();
+
+    /**
+     * Returns the share of transposition table probes that found an entry.
+     *
+     * @return The hit rate from 0 to 1.
+     */
+    double getTranspositionHitRate();
+
+    /**
+     * Returns the average number of legal moves found each time the engines generated moves.
+     *
+     * @return The branching factor.
+     */
+    double getBranchingFactor();
+
+    /**
+     * Returns the average time taken to choose a move.
+     *
+     * @return The time per move in milliseconds.
+     */
+    double getAverageMoveMillis();
+
+    /**
+     * Returns the time taken to choose the last move.
+     *
+     * @return The time in milliseconds.
+     */
+    double getLastMoveMillis();
+
+    /**
+     * Returns the longest time taken to choose a move.
+     *
+     * @return The time in milliseconds.
+     */
+    double getMaxMoveMillis();
+
+    /**
+     * Returns the average number of times moves were generated while choosing a move.
+     *
+     * @return The move generation calls per move.
+     */
+    double getMoveGenerationsPerMove();
+
+    /**
+     * Clears every counter.
+     */
+    void reset();
+}
@@ -0,0 +1,15 @@
+/**
+ * Scores positions that the search does not look past.
+ *
+ * Implementations must be safe to share between threads, since every engine of a parallel search uses the same one.
+ */
+interface Evaluator {
+    /**
+     * Scores a position for the player to move.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @return The score from the point of view of the player to move, well inside +/- SearchEngine.WIN_SCORE.
+     */
+    int evaluate(long player, long opponent);
+}
@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only file of game records, with an index file of where each game starts.
+ *
+ * Games are appended through a FileChannel and read back through memory mappings of both files,
+ * so reading or replaying one game touches only that game's bytes, however many games there are.
+ * Games are numbered from 0 in the order they were appended. The index is written after the game,
+ * so a game cut short by a crash is never indexed, and is overwritten by the next append.
+ * Mappings are limited to 2 GB, which is tens of millions of games.
+ *
+ * The archive file starts with the magic number and the format version (ints), then holds the
+ * encoded records back to back (see {@link GameRecord}). The index file, named after the archive with
+ * ".idx" on the end, holds the offset of each game in the archive file as a long.
+ * All methods are synchronized, so one archive can be shared by the games of a tournament.
+ */
+class GameArchive implements AutoCloseable {
+    static final String DEFAULT_FILE = "games.bin";
+
+    static final int MAGIC = 0x4F544741;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+
+    private final FileChannel data;
+    private final FileChannel index;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(1024);
+    private final ByteBuffer offsetBuffer = ByteBuffer.allocate(Long.BYTES);
+
+    private long count;
+    private long dataEnd;
+
+    // Mappings of the files as they were when last mapped; they are remapped when they fall behind
+    private MappedByteBuffer dataMap;
+    private MappedByteBuffer indexMap;
+
+    /**
+     * Opens an archive, creating it if it does not exist.
+     *
+     * @param file The archive file. The index file is next to it.
+     * @throws IOException if the files cannot be opened or the file is not a game archive
+     */
+    public GameArchive(Path file) throws IOException {
+        data = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(Path.of(file + ".idx"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            if (data.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+                data.write(header, 0);
+                index.truncate(0);
+            }
+            else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                data.read(header, 0);
+                if (data.size() < HEADER_BYTES || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException("Not a game archive: " + file);
+                }
+            }
+
+            count = index.size() / Long.BYTES;
+            dataEnd = HEADER_BYTES;
+            if (count > 0) {
+                long last = offsetOf(count - 1);
+                dataEnd = last + recordLength(last);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a game to the end of the archive.
+     *
+     * @param record The game to add.
+     * @return The number of the game in the archive.
+     * @throws IOException if the archive cannot be written
+     */
+    public synchronized long append(GameRecord record) throws IOException {
+        writeBuffer.clear();
+        record.writeTo(writeBuffer);
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            data.write(writeBuffer, dataEnd + writeBuffer.position());
+        }
+
+        offsetBuffer.clear();
+        offsetBuffer.putLong(0, dataEnd);
+        while (offsetBuffer.hasRemaining()) {
+            index.write(offsetBuffer, count * Long.BYTES + offsetBuffer.position());
+        }
+
+        dataEnd += record.getEncodedLength();
+        return count++;
+    }
+
+    /**
+     * Returns the number of games in the archive.
+     *
+     * @return The number of games.
+     */
+    public synchronized long size() {
+        return count;
+    }
+
+    /**
+     * Reads a game.
+     *
+     * @param game The number of the game.
+     * @return The game.
+     * @throws IOException if the archive cannot be read
+     * @throws IndexOutOfBoundsException if there is no such game
+     */
+    public synchronized GameRecord read(long game) throws IOException {
+        return GameRecord.readFrom(dataMap(), (int) offsetOf(checkGame(game)));
+    }
+
+    /**
+     * Replays a game up to a ply, reading only the game's moves.
+     *
+     * @param game The number of the game.
+     * @param ply How many plies to play, counting passes.
+     * @return The game after that many plies, including the board and the player to move.
+     * @throws IOException if the archive cannot be read
+     * @throws IndexOutOfBoundsException if there is no such game
+     * @throws IllegalArgumentException if the game has fewer plies
+     */
+    public synchronized GameState replay(long game, int ply) throws IOException {
+        MappedByteBuffer map = dataMap();
+        int moves = GameRecord.movesOffset(map, (int) offsetOf(checkGame(game)));
+        int plies = map.get(moves) & 0xFF;
+        if (ply < 0 || ply > plies) {
+            throw new IllegalArgumentException("Game " + game + " has no ply " + ply);
+        }
+
+        GameState state = new GameState();
+        for (int i = 1; i <= ply; i++) {
+            GameRecord.playRecorded(state, map.get(moves + i));
+        }
+        return state;
+    }
+
+    /**
+     * Checks that a game is in the archive.
+     *
+     * @param game The number of the game.
+     * @return The number of the game.
+     * @throws IndexOutOfBoundsException if there is no such game
+     */
+    private long checkGame(long game) {
+        if (game < 0 || game >= count) {
+            throw new IndexOutOfBoundsException("There is no game " + game + " in an archive of " + count);
+        }
+        return game;
+    }
+
+    /**
+     * Returns where a game starts in the archive file.
+     *
+     * @param game The number of the game.
+     * @return The offset of the game's record.
+     * @throws IOException if the index cannot be read
+     */
+    private long offsetOf(long game) throws IOException {
+        if (indexMap == null || (game + 1) * Long.BYTES > indexMap.capacity()) {
+            indexMap = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size());
+        }
+        return indexMap.getLong((int) (game * Long.BYTES));
+    }
+
+    /**
+     * Returns the length of the record at an offset.
+     *
+     * @param offset The offset of the record.
+     * @return The length of the record in bytes.
+     * @throws IOException if the archive cannot be read
+     */
+    private int recordLength(long offset) throws IOException {
+        MappedByteBuffer map = data.map(FileChannel.MapMode.READ_ONLY, 0, data.size());
+        int moves = GameRecord.movesOffset(map, (int) offset);
+        return moves + 1 + (map.get(moves) & 0xFF) - (int) offset;
+    }
+
+    /**
+     * Returns a mapping of the archive file that covers every indexed game.
+     *
+     * @return The mapping.
+     * @throws IOException if the archive cannot be mapped
+     */
+    private MappedByteBuffer dataMap() throws IOException {
+        if (dataMap == null || dataMap.capacity() < dataEnd) {
+            dataMap = data.map(FileChannel.MapMode.READ_ONLY, 0, dataEnd);
+        }
+        return dataMap;
+    }
+
+    /**
+     * Flushes the files to disk and closes them.
+     *
+     * @throws IOException if the files cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            data.force(false);
+            index.force(false);
+        }
+        finally {
+            data.close();
+            index.close();
+        }
+    }
+
+    /**
+     * Prints a summary of an archive, one game, or the board of a game at a ply.
+     *
+     * @param args The archive file, then optionally a game number and a ply.
+     * @throws IOException if the archive cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java GameArchive [archive] [game] [ply]");
+            return;
+        }
+
+        try (GameArchive archive = new GameArchive(Path.of(args[0]))) {
+            if (args.length == 1) {
+                long black = 0;
+                long white = 0;
+                for (long game = 0; game < archive.size(); game++) {
+                    Tile winner = archive.read(game).getWinner();
+                    black += winner == Tile.BLACK ? 1 : 0;
+                    white += winner == Tile.WHITE ? 1 : 0;
+                }
+                System.out.printf("%,d games: black won %,d, white won %,d, %,d draws%n", archive.size(), black, white, archive.size() - black - white);
+            }
+            else if (args.length == 2) {
+                System.out.println(archive.read(Long.parseLong(args[1])));
+            }
+            else {
+                GameState state = archive.replay(Long.parseLong(args[1]), Integer.parseInt(args[2]));
+                System.out.println(state.getBoard().toString(state.getValidMoves()));
+                System.out.println((state.isGameOver() ? "Game over" : state.getCurrentPlayer() + " to move"));
+            }
+        }
+    }
+}
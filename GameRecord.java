@@ -0,0 +1,276 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A finished game: who played it, how it ended and every move, one byte per move.
+ *
+ * Games always start from the usual starting position with black to move. Each move is the square index
+ * (y * 8 + x) of the disc played, or PASS when the player had no valid move, so a game is replayed by
+ * playing the bytes in order.
+ *
+ * Encoded layout: the length of the black player's name in UTF-8 (byte) and the name, the same for
+ * the white player, the final number of black and white discs (bytes), the number of moves (byte)
+ * and then the moves.
+ */
+class GameRecord {
+    static final byte PASS = 64;
+
+    // A game has at most 60 moves, and there can never be two passes in a row before the end
+    static final int MAX_PLIES = 128;
+
+    private static final int MAX_NAME_BYTES = 255;
+
+    private final String blackPlayer;
+    private final String whitePlayer;
+    private final byte[] moves;
+    private final int blackDiscs;
+    private final int whiteDiscs;
+
+    /**
+     * Constructor for GameRecord class.
+     *
+     * @param blackPlayer The name of the player who played black.
+     * @param whitePlayer The name of the player who played white.
+     * @param moves The moves in order, with PASS for passes. They are copied.
+     * @param blackDiscs The number of black discs at the end of the game.
+     * @param whiteDiscs The number of white discs at the end of the game.
+     * @throws IllegalArgumentException if there are too many moves or a name is too long
+     */
+    public GameRecord(String blackPlayer, String whitePlayer, byte[] moves, int blackDiscs, int whiteDiscs) {
+        if (moves.length > MAX_PLIES) {
+            throw new IllegalArgumentException("A game cannot have " + moves.length + " moves");
+        }
+        if (nameBytes(blackPlayer).length > MAX_NAME_BYTES || nameBytes(whitePlayer).length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Player names must fit in " + MAX_NAME_BYTES + " bytes");
+        }
+        this.blackPlayer = blackPlayer;
+        this.whitePlayer = whitePlayer;
+        this.moves = moves.clone();
+        this.blackDiscs = blackDiscs;
+        this.whiteDiscs = whiteDiscs;
+    }
+
+    /**
+     * Returns the name of the player who played black.
+     *
+     * @return The name of the black player.
+     */
+    public String getBlackPlayer() {
+        return blackPlayer;
+    }
+
+    /**
+     * Returns the name of the player who played white.
+     *
+     * @return The name of the white player.
+     */
+    public String getWhitePlayer() {
+        return whitePlayer;
+    }
+
+    /**
+     * Returns the moves of the game.
+     *
+     * @return A copy of the moves, one square index or PASS per ply.
+     */
+    public byte[] getMoves() {
+        return moves.clone();
+    }
+
+    /**
+     * Returns the number of plies, counting passes.
+     *
+     * @return The number of plies.
+     */
+    public int getPlies() {
+        return moves.length;
+    }
+
+    /**
+     * Returns the number of black discs at the end of the game.
+     *
+     * @return The number of black discs.
+     */
+    public int getBlackDiscs() {
+        return blackDiscs;
+    }
+
+    /**
+     * Returns the number of white discs at the end of the game.
+     *
+     * @return The number of white discs.
+     */
+    public int getWhiteDiscs() {
+        return whiteDiscs;
+    }
+
+    /**
+     * Returns who won.
+     *
+     * @return BLACK or WHITE for the winner, or EMPTY for a draw.
+     */
+    public Tile getWinner() {
+        return blackDiscs > whiteDiscs ? Tile.BLACK : blackDiscs < whiteDiscs ? Tile.WHITE : Tile.EMPTY;
+    }
+
+    /**
+     * Plays the game from the start up to a ply.
+     *
+     * @param ply How many plies to play, counting passes.
+     * @return The game after that many plies.
+     * @throws IllegalArgumentException if the ply is out of range or the record holds an illegal move
+     */
+    public GameState replay(int ply) {
+        if (ply < 0 || ply > moves.length) {
+            throw new IllegalArgumentException("The game has no ply " + ply);
+        }
+        GameState game = new GameState();
+        for (int i = 0; i < ply; i++) {
+            playRecorded(game, moves[i]);
+        }
+        return game;
+    }
+
+    /**
+     * Plays one recorded move. Passes need no action, because the game state passes by itself.
+     *
+     * @param game The game to play the move in.
+     * @param move The recorded move.
+     * @throws IllegalArgumentException if the move is not valid
+     */
+    static void playRecorded(GameState game, byte move) {
+        if (move != PASS) {
+            if (move < 0 || move > PASS) {
+                throw new IllegalArgumentException("Not a move: " + move);
+            }
+            game.play(Point.ofIndex(move));
+        }
+    }
+
+    /**
+     * Returns the number of bytes this record takes when encoded.
+     *
+     * @return The encoded length.
+     */
+    public int getEncodedLength() {
+        return 5 + nameBytes(blackPlayer).length + nameBytes(whitePlayer).length + moves.length;
+    }
+
+    /**
+     * Encodes this record.
+     *
+     * @param buffer The buffer to write to, at its position.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        byte[] black = nameBytes(blackPlayer);
+        byte[] white = nameBytes(whitePlayer);
+        buffer.put((byte) black.length).put(black);
+        buffer.put((byte) white.length).put(white);
+        buffer.put((byte) blackDiscs).put((byte) whiteDiscs);
+        buffer.put((byte) moves.length).put(moves);
+    }
+
+    /**
+     * Decodes a record.
+     *
+     * @param buffer The buffer to read from.
+     * @param offset Where the record starts in the buffer.
+     * @return The record.
+     */
+    public static GameRecord readFrom(ByteBuffer buffer, int offset) {
+        int position = offset;
+        String black = readName(buffer, position);
+        position += 1 + (buffer.get(position) & 0xFF);
+        String white = readName(buffer, position);
+        position += 1 + (buffer.get(position) & 0xFF);
+
+        int blackDiscs = buffer.get(position);
+        int whiteDiscs = buffer.get(position + 1);
+        byte[] moves = new byte[buffer.get(position + 2) & 0xFF];
+        buffer.get(position + 3, moves);
+        return new GameRecord(black, white, moves, blackDiscs, whiteDiscs);
+    }
+
+    /**
+     * Returns where the moves of an encoded record start, skipping the names and the result.
+     *
+     * @param buffer The buffer holding the record.
+     * @param offset Where the record starts in the buffer.
+     * @return The offset of the move count, which the moves follow.
+     */
+    static int movesOffset(ByteBuffer buffer, int offset) {
+        int position = offset + 1 + (buffer.get(offset) & 0xFF);
+        return position + 1 + (buffer.get(position) & 0xFF) + 2;
+    }
+
+    /**
+     * Reads a name of an encoded record.
+     *
+     * @param buffer The buffer holding the record.
+     * @param offset Where the name's length byte is.
+     * @return The name.
+     */
+    private static String readName(ByteBuffer buffer, int offset) {
+        byte[] name = new byte[buffer.get(offset) & 0xFF];
+        buffer.get(offset + 1, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes a name.
+     *
+     * @param name The name.
+     * @return The name in UTF-8.
+     */
+    private static byte[] nameBytes(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the game in standard notation, with "--" for passes, after the players and the result.
+     *
+     * @return A string representation of the game.
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(blackPlayer).append(" (black) ").append(blackDiscs).append('-').append(whiteDiscs)
+            .append(' ').append(whitePlayer).append(" (white): ");
+        for (byte move : moves) {
+            if (move == PASS) {
+                str.append("--");
+            }
+            else {
+                str.append(Point.ofIndex(move).toNotation());
+            }
+        }
+        return str.toString();
+    }
+
+    /**
+     * Returns whether another object is the same game with the same players and result.
+     *
+     * @param obj The object to compare with.
+     * @return True if the records are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof GameRecord)) {
+            return false;
+        }
+        GameRecord other = (GameRecord) obj;
+        return blackPlayer.equals(other.blackPlayer) && whitePlayer.equals(other.whitePlayer)
+            && Arrays.equals(moves, other.moves) && blackDiscs == other.blackDiscs && whiteDiscs == other.whiteDiscs;
+    }
+
+    /**
+     * Returns a hash code value for this record.
+     *
+     * @return A hash of the moves.
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(moves);
+    }
+}
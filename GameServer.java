@@ -0,0 +1,407 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * A TCP server that hosts many games at once, one per connection, on a single selector thread.
+ *
+ * Every connection is a session with its own {@link GameState}. The client plays black and the
+ * server answers each move with the easy AI's white moves. Commands are lines of text, and every
+ * command gets exactly one line back, starting with "OK" or "ERR" and a message:
+ *
+ *   NEW          start a new game; answers the board, as for BOARD
+ *   MOVE d3      play a move in standard notation; answers the AI's replies (none if the player
+ *                moves again after a pass), then "OVER" and the disc counts if the game is over
+ *   BOARD        answers the 64 squares row by row from a1 (X black, O white, - empty) and the
+ *                player to move (X, O, or - when the game is over), as read by {@link BatchAnalysis}
+ *   HINTS        answers the legal moves in standard notation
+ *   STATS        answers the open sessions, games started, moves played and the heap in use, and
+ *                whether the heap was measured after a garbage collection ("gc=true"), which only
+ *                happens when the server was started with --measure-heap
+ *   QUIT         answers "OK BYE" and closes the connection
+ *
+ * Moves are cheap enough to play on the selector thread. A session only holds a small read buffer,
+ * and a write buffer only while the client is not reading its answers, during which the session
+ * is not read either.
+ *
+ * A forced garbage collection stops every session while it runs, so any client could stall the
+ * server by repeating STATS; --measure-heap is for load testing on a private server only.
+ *
+ * Usage: java GameServer [port] [--measure-heap]
+ */
+class GameServer implements Runnable {
+    static final int DEFAULT_PORT = 7777;
+
+    // Longest command line accepted, including the line end
+    static final int MAX_LINE = 128;
+
+    private static final int BACKLOG = 4096;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    // Big enough for the answers to a full read buffer of the shortest commands
+    private final ByteBuffer output = ByteBuffer.allocateDirect(64 * 1024);
+    private final StringBuilder response = new StringBuilder();
+    private final boolean measureHeap;
+
+    private int sessions;
+    private long games;
+    private long moves;
+
+    /**
+     * One connection and its game.
+     */
+    private static class Session {
+        final ByteBuffer input = ByteBuffer.allocate(MAX_LINE);
+        GameState game;
+
+        // Answers the client has not read yet, or null if everything has been sent
+        ByteBuffer pending;
+        boolean closing;
+    }
+
+    /**
+     * Opens the server socket.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @throws IOException if the port cannot be bound
+     */
+    public GameServer(int port) throws IOException {
+        this(port, false);
+    }
+
+    /**
+     * Opens the server socket.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @param measureHeap True to collect garbage before STATS measures the heap.
+     * @throws IOException if the port cannot be bound
+     */
+    public GameServer(int port, boolean measureHeap) throws IOException {
+        this.measureHeap = measureHeap;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), BACKLOG);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return The port number.
+     * @throws IOException if the socket is closed
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Serves connections until the server is stopped.
+     */
+    @Override
+    public void run() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        else if (key.isReadable()) {
+                            read(key);
+                        }
+                        else if (key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        // Only this connection is broken; a failed accept leaves the server socket open
+                        if (key.attachment() instanceof Session) {
+                            close(key);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // The server was stopped
+        }
+    }
+
+    /**
+     * Stops the server and closes every connection.
+     *
+     * @throws IOException if the sockets cannot be closed
+     */
+    public void stop() throws IOException {
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * Accepts all waiting connections.
+     *
+     * @throws IOException if a connection cannot be set up
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.register(selector, SelectionKey.OP_READ, new Session());
+            sessions++;
+        }
+    }
+
+    /**
+     * Reads from a connection and answers every complete command line.
+     *
+     * @param key The key of the connection.
+     * @throws IOException if the connection is broken
+     */
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Session session = (Session) key.attachment();
+        ByteBuffer input = session.input;
+
+        if (channel.read(input) < 0) {
+            close(key);
+            return;
+        }
+
+        output.clear();
+        int start = 0;
+        for (int i = 0; i < input.position() && !session.closing; i++) {
+            if (input.get(i) == '\n') {
+                String line = new String(input.array(), start, i - start, StandardCharsets.US_ASCII).strip();
+                start = i + 1;
+                if (!line.isEmpty()) {
+                    answer(session, line);
+                }
+            }
+        }
+
+        if (start == 0 && !input.hasRemaining()) {
+            answerLine("ERR Line is longer than " + MAX_LINE + " characters");
+            session.closing = true;
+        }
+        input.limit(input.position()).position(start);
+        input.compact();
+
+        output.flip();
+        send(key, channel, session);
+    }
+
+    /**
+     * Sends what is left of a session's answers once the client is reading again.
+     *
+     * @param key The key of the connection.
+     * @throws IOException if the connection is broken
+     */
+    private void write(SelectionKey key) throws IOException {
+        Session session = (Session) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        channel.write(session.pending);
+
+        if (!session.pending.hasRemaining()) {
+            session.pending = null;
+            if (session.closing) {
+                close(key);
+            }
+            else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    /**
+     * Sends the answers in the output buffer, keeping what the socket does not take for later.
+     *
+     * @param key The key of the connection.
+     * @param channel The connection.
+     * @param session The session of the connection.
+     * @throws IOException if the connection is broken
+     */
+    private void send(SelectionKey key, SocketChannel channel, Session session) throws IOException {
+        channel.write(output);
+        if (output.hasRemaining()) {
+            session.pending = ByteBuffer.allocate(output.remaining()).put(output).flip();
+            key.interestOps(SelectionKey.OP_WRITE);
+        }
+        else if (session.closing) {
+            close(key);
+        }
+    }
+
+    /**
+     * Closes a connection.
+     *
+     * @param key The key of the connection.
+     */
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Nothing more can be done with this connection
+        }
+        sessions--;
+    }
+
+    /**
+     * Runs one command and adds its answer to the output buffer.
+     *
+     * @param session The session the command came from.
+     * @param line The command line.
+     */
+    private void answer(Session session, String line) {
+        String[] words = line.split("\\s+");
+        String command = words[0].toUpperCase();
+        GameState game = session.game;
+
+        if (command.equals("NEW")) {
+            session.game = new GameState();
+            games++;
+            answerLine("OK " + boardLine(session.game));
+        }
+        else if (command.equals("QUIT")) {
+            answerLine("OK BYE");
+            session.closing = true;
+        }
+        else if (command.equals("STATS")) {
+            if (measureHeap) {
+                System.gc();
+            }
+            Runtime runtime = Runtime.getRuntime();
+            long heap = runtime.totalMemory() - runtime.freeMemory();
+            answerLine("OK sessions=" + sessions + " games=" + games + " moves=" + moves + " heap=" + heap + " gc=" + measureHeap);
+        }
+        else if (!command.equals("MOVE") && !command.equals("BOARD") && !command.equals("HINTS")) {
+            answerLine("ERR Unknown command " + words[0]);
+        }
+        else if (game == null) {
+            answerLine("ERR No game, send NEW first");
+        }
+        else if (command.equals("BOARD")) {
+            answerLine("OK " + boardLine(game));
+        }
+        else if (command.equals("HINTS")) {
+            response.setLength(0);
+            response.append("OK");
+            for (long legal = game.getLegalMoves(); legal != 0; legal &= legal - 1) {
+                appendMove(Long.numberOfTrailingZeros(legal));
+            }
+            answerLine(response);
+        }
+        else {
+            answerMove(game, words);
+        }
+    }
+
+    /**
+     * Plays the client's move and the AI's replies.
+     *
+     * @param game The game of the session.
+     * @param words The words of the command line.
+     */
+    private void answerMove(GameState game, String[] words) {
+        Point move = words.length == 2 ? Point.ofNotation(words[1]) : Point.OFF_BOARD;
+        if (game.isGameOver()) {
+            answerLine("ERR The game is over");
+            return;
+        }
+        if (move == Point.OFF_BOARD || !game.isLegal(move)) {
+            answerLine("ERR Illegal move " + (words.length > 1 ? words[1] : ""));
+            return;
+        }
+        game.play(move);
+        moves++;
+
+        response.setLength(0);
+        response.append("OK");
+        while (!game.isGameOver() && game.getCurrentPlayer() == Tile.WHITE) {
+            Point reply = AI.makeMove(game.getBoard(), game.getValidMoves());
+            game.play(reply);
+            appendMove(reply.getIndex());
+        }
+        if (game.isGameOver()) {
+            Board board = game.getBoard();
+            response.append(" OVER ").append(board.getNumberOfBlackPieces()).append(' ').append(board.getNumberOfWhitePieces());
+        }
+        answerLine(response);
+    }
+
+    /**
+     * Writes a game's board in the format of {@link BatchAnalysis}.
+     *
+     * @param game The game.
+     * @return The 64 squares, a space and the player to move, or - if the game is over.
+     */
+    static String boardLine(GameState game) {
+        Board board = game.getBoard();
+        long black = board.getBlackDiscs();
+        long white = board.getWhiteDiscs();
+
+        StringBuilder str = new StringBuilder(66);
+        for (int square = 0; square < 64; square++) {
+            str.append((black >>> square & 1) != 0 ? 'X' : (white >>> square & 1) != 0 ? 'O' : '-');
+        }
+        str.append(' ').append(game.isGameOver() ? '-' : game.getCurrentPlayer() == Tile.BLACK ? 'X' : 'O');
+        return str.toString();
+    }
+
+    /**
+     * Adds a move in standard notation to the answer being built.
+     *
+     * @param square The square index of the move.
+     */
+    private void appendMove(int square) {
+        response.append(' ').append(Point.ofIndex(square).toNotation());
+    }
+
+    /**
+     * Adds an answer line to the output buffer.
+     *
+     * @param line The answer, without the line end.
+     */
+    private void answerLine(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            output.put((byte) line.charAt(i));
+        }
+        output.put((byte) '\n');
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        boolean measureHeap = false;
+        for (String arg : args) {
+            if (arg.equals("--measure-heap")) {
+                measureHeap = true;
+            }
+            else {
+                port = Integer.parseInt(arg);
+            }
+        }
+        EngineMetrics.enableIfRequested();
+        GameServer server = new GameServer(port, measureHeap);
+        System.out.println("Listening on port " + server.getPort());
+        server.run();
+    }
+}
@@ -0,0 +1,231 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Drives a game: owns the board, whose turn it is and whether the game is over.
+ *
+ * The legal moves of the player to move are worked out once when a position is reached and kept until the
+ * next move, so asking for them, checking a move or checking for the end of the game costs nothing extra.
+ * Passes are handled automatically: after a move, if the next player has no valid move the turn goes back
+ * to the player who just moved, and if neither player can move the game is over.
+ * Every move and pass is recorded, so a game played from the start can be saved as a {@link GameRecord}.
+ */
+class GameState {
+    private final Board board;
+    private Tile currentPlayer;
+    private long legalMoves;
+    private boolean passed;
+    private boolean gameOver;
+    private int moveCount;
+    private final boolean fromStart;
+    private final byte[] record;
+    private int plies;
+
+    // Built from the legal moves only when the console asks for it
+    private HashMap<Point, ArrayList<Point>> validMoves;
+
+    /**
+     * Creates a game at the starting position with black to move.
+     */
+    public GameState() {
+        this(new Board(), Tile.BLACK);
+    }
+
+    /**
+     * Creates a game from a position. If the given player has no valid move, the turn passes to the other player.
+     *
+     * @param position The position to start from. It is copied.
+     * @param toMove The colour of the player to move.
+     */
+    public GameState(Board position, Tile toMove) {
+        Board start = new Board();
+        this.board = new Board(position);
+        this.currentPlayer = toMove;
+        this.fromStart = toMove == Tile.BLACK && position.getBlackDiscs() == start.getBlackDiscs() && position.getWhiteDiscs() == start.getWhiteDiscs();
+        this.record = new byte[GameRecord.MAX_PLIES];
+        startTurn();
+    }
+
+    /**
+     * Creates a copy of a game, which can then be played on without changing the original.
+     *
+     * @param other The game to copy.
+     */
+    public GameState(GameState other) {
+        this.board = new Board(other.board);
+        this.currentPlayer = other.currentPlayer;
+        this.legalMoves = other.legalMoves;
+        this.passed = other.passed;
+        this.gameOver = other.gameOver;
+        this.moveCount = other.moveCount;
+        this.fromStart = other.fromStart;
+        this.record = other.record.clone();
+        this.plies = other.plies;
+    }
+
+    /**
+     * Returns the board of this game. It must not be changed directly, only through {@link #play(Point)}.
+     *
+     * @return The board of this game.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the colour of the player to move. Once the game is over, this is the player who would have moved.
+     *
+     * @return The colour of the player to move.
+     */
+    public Tile getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    /**
+     * Returns the valid moves of the player to move.
+     *
+     * @return A bitboard of the squares the player to move can play, or 0 once the game is over.
+     */
+    public long getLegalMoves() {
+        return legalMoves;
+    }
+
+    /**
+     * Returns the valid moves of the player to move with the pieces each one flips, as the console and easy AI use them.
+     *
+     * @return A HashMap with each valid move as a key and the pieces it flips as the value. It must not be modified.
+     */
+    public HashMap<Point, ArrayList<Point>> getValidMoves() {
+        if (validMoves == null) {
+            validMoves = new HashMap<Point, ArrayList<Point>>();
+            long player = board.getDiscs(currentPlayer);
+            long opponent = board.getDiscs(VaildMoves.opposite(currentPlayer));
+            for (long moves = legalMoves; moves != 0; moves &= moves - 1) {
+                int square = Long.numberOfTrailingZeros(moves);
+                ArrayList<Point> flips = new ArrayList<Point>();
+                for (long flipped = VaildMoves.flipsFor(square, player, opponent); flipped != 0; flipped &= flipped - 1) {
+                    flips.add(Point.ofIndex(Long.numberOfTrailingZeros(flipped)));
+                }
+                validMoves.put(Point.ofIndex(square), flips);
+            }
+        }
+        return validMoves;
+    }
+
+    /**
+     * Returns whether the player to move can play a point.
+     *
+     * @param move The point to check.
+     * @return True if the move is valid, false otherwise.
+     */
+    public boolean isLegal(Point move) {
+        return move.isOnBoard() && (legalMoves & (1L << move.getIndex())) != 0;
+    }
+
+    /**
+     * Plays a move for the player to move, then gives the turn to the next player who can move.
+     *
+     * @param move The point to play.
+     * @return A bitboard of the discs that were flipped.
+     * @throws IllegalArgumentException if the move is not valid
+     * @throws IllegalStateException if the game is over
+     */
+    public long play(Point move) {
+        if (gameOver) {
+            throw new IllegalStateException("The game is over");
+        }
+        if (!isLegal(move)) {
+            throw new IllegalArgumentException("Move is invalid as no pieces can be flipped");
+        }
+
+        long flips = board.makeMove(move.getIndex(), currentPlayer);
+        record[plies++] = (byte) move.getIndex();
+        moveCount++;
+        currentPlayer = VaildMoves.opposite(currentPlayer);
+        startTurn();
+        return flips;
+    }
+
+    /**
+     * Works out the legal moves of the new position, passing the turn back if the player to move has none.
+     */
+    private void startTurn() {
+        validMoves = null;
+        passed = false;
+        legalMoves = VaildMoves.getLegalMoves(board.getDiscs(currentPlayer), board.getDiscs(VaildMoves.opposite(currentPlayer)));
+        if (legalMoves == 0) {
+            Tile other = VaildMoves.opposite(currentPlayer);
+            long otherMoves = VaildMoves.getLegalMoves(board.getDiscs(other), board.getDiscs(currentPlayer));
+            if (otherMoves == 0) {
+                gameOver = true;
+            }
+            else {
+                passed = true;
+                record[plies++] = GameRecord.PASS;
+                currentPlayer = other;
+                legalMoves = otherMoves;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the other player had to pass, so the player to move is moving twice in a row.
+     *
+     * @return True if the turn came back to the player to move because the other player had no valid move.
+     */
+    public boolean wasPassed() {
+        return passed;
+    }
+
+    /**
+     * Returns whether neither player can move.
+     *
+     * @return True if the game is over, false otherwise.
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Returns how many moves have been played since this game was created.
+     *
+     * @return The number of moves played, not counting passes.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the moves played so far, including passes.
+     *
+     * @return A copy of the moves, one square index or GameRecord.PASS per ply.
+     */
+    public byte[] getRecordedMoves() {
+        return Arrays.copyOf(record, plies);
+    }
+
+    /**
+     * Saves this game as a record.
+     *
+     * @param blackPlayer The name of the player who played black.
+     * @param whitePlayer The name of the player who played white.
+     * @return The record, with the current disc counts as the result.
+     * @throws IllegalStateException if the game did not start from the starting position
+     */
+    public GameRecord toRecord(String blackPlayer, String whitePlayer) {
+        if (!fromStart) {
+            throw new IllegalStateException("Only games played from the starting position can be recorded");
+        }
+        return new GameRecord(blackPlayer, whitePlayer, getRecordedMoves(), board.getNumberOfBlackPieces(), board.getNumberOfWhitePieces());
+    }
+
+    /**
+     * Returns the disc difference from black's point of view. At the end of the game this is the result.
+     *
+     * @return The number of black discs minus the number of white discs.
+     */
+    public int getDiscDifference() {
+        return board.getNumberOfBlackPieces() - board.getNumberOfWhitePieces();
+    }
+}
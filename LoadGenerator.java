@@ -0,0 +1,334 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Simulates many players at once against a {@link GameServer} and reports how it copes.
+ *
+ * Every simulated player has its own connection and plays random legal moves, starting a new game
+ * when one ends. It keeps its own copy of the game and checks that every reply from the server is
+ * a legal move. All players run on one selector thread, and each has one command in flight at a
+ * time, so the move latency is the time from sending a move to reading the server's answer.
+ *
+ * Before connecting and again once every player has a game, the server's heap is measured with
+ * STATS, and the difference divided by the number of players is the memory of a session. Without
+ * a garbage collection first the difference is mostly garbage, so it is only reported when the
+ * server was started with --measure-heap.
+ *
+ * Usage: java LoadGenerator [host] [port] [players] [seconds] [seed]
+ */
+class LoadGenerator {
+    private final InetSocketAddress address;
+    private final int players;
+    private final Random random;
+
+    private long[] latencies = new long[1 << 16];
+    private int latencyCount;
+    private long games;
+    private long errors;
+
+    /**
+     * One simulated player.
+     */
+    private static class SimulatedPlayer {
+        final ByteBuffer input = ByteBuffer.allocate(GameServer.MAX_LINE * 4);
+        GameState game;
+        boolean awaitingNew = true;
+        long sentAt;
+    }
+
+    /**
+     * Constructor for LoadGenerator class.
+     *
+     * @param address The address of the server.
+     * @param players The number of players to simulate.
+     * @param seed The seed of the players' random moves.
+     */
+    public LoadGenerator(InetSocketAddress address, int players, long seed) {
+        this.address = address;
+        this.players = players;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Connects the players, lets them play for a while and prints a report.
+     *
+     * @param seconds How long the players play once they are all connected.
+     * @throws IOException if the server cannot be reached
+     */
+    public void run(long seconds) throws IOException {
+        try (Socket admin = new Socket(address.getAddress(), address.getPort());
+                Selector selector = Selector.open()) {
+            BufferedReader adminIn = new BufferedReader(new InputStreamReader(admin.getInputStream(), StandardCharsets.US_ASCII));
+            PrintWriter adminOut = new PrintWriter(admin.getOutputStream(), true);
+            String statsBefore = stats(adminIn, adminOut);
+
+            long connectStart = System.nanoTime();
+            for (int i = 0; i < players; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.connect(address);
+                channel.register(selector, SelectionKey.OP_CONNECT, new SimulatedPlayer());
+            }
+
+            // Every player sends NEW once connected; the heap is measured when all of them have a game
+            int started = 0;
+            while (started < players) {
+                started += poll(selector, true);
+            }
+            long connectMillis = (System.nanoTime() - connectStart) / 1_000_000;
+            String statsWithSessions = stats(adminIn, adminOut);
+
+            latencyCount = 0;
+            games = 0;
+            long start = System.nanoTime();
+            for (SelectionKey key : selector.keys()) {
+                makeMove((SocketChannel) key.channel(), (SimulatedPlayer) key.attachment());
+            }
+            long end = start + seconds * 1_000_000_000L;
+            while (System.nanoTime() < end) {
+                poll(selector, false);
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            long sessionHeap = statsWithSessions.contains(" gc=true") ? heapOf(statsWithSessions) - heapOf(statsBefore) : -1;
+            report(connectMillis, sessionHeap, elapsed);
+        }
+    }
+
+    /**
+     * Handles the players whose connections are ready.
+     *
+     * @param selector The selector of the players' connections.
+     * @param connecting True while players are still being connected, false once they are playing.
+     * @return The number of players that received the answer to their first NEW.
+     * @throws IOException if a connection is broken
+     */
+    private int poll(Selector selector, boolean connecting) throws IOException {
+        int started = 0;
+        selector.select(100);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            SocketChannel channel = (SocketChannel) key.channel();
+            SimulatedPlayer player = (SimulatedPlayer) key.attachment();
+
+            if (key.isConnectable()) {
+                channel.finishConnect();
+                key.interestOps(SelectionKey.OP_READ);
+                send(channel, "NEW");
+                continue;
+            }
+
+            if (channel.read(player.input) < 0) {
+                throw new IOException("The server closed a connection");
+            }
+            String line;
+            while ((line = nextLine(player.input)) != null) {
+                if (answered(channel, player, line, connecting)) {
+                    started++;
+                }
+            }
+        }
+        return started;
+    }
+
+    /**
+     * Handles an answer from the server and sends the player's next command.
+     *
+     * @param channel The player's connection.
+     * @param player The player.
+     * @param line The answer.
+     * @param connecting True while players are still being connected, in which case new games wait.
+     * @return True if the answer was the OK to the player's first NEW.
+     * @throws IOException if the command cannot be sent
+     */
+    private boolean answered(SocketChannel channel, SimulatedPlayer player, String line, boolean connecting) throws IOException {
+        if (!line.startsWith("OK")) {
+            errors++;
+            player.awaitingNew = true;
+            send(channel, "NEW");
+            return false;
+        }
+
+        boolean firstGame = false;
+        if (player.awaitingNew) {
+            firstGame = player.game == null;
+            player.awaitingNew = false;
+            player.game = new GameState();
+            if (connecting) {
+                // Players wait for everyone to connect before they start moving
+                return firstGame;
+            }
+        }
+        else {
+            recordLatency(System.nanoTime() - player.sentAt);
+
+            String[] words = line.split(" ");
+            for (int i = 1; i < words.length && !words[i].equals("OVER"); i++) {
+                Point reply = Point.ofNotation(words[i]);
+                if (player.game.isGameOver() || !player.game.isLegal(reply)) {
+                    errors++;
+                    break;
+                }
+                player.game.play(reply);
+            }
+
+            if (player.game.isGameOver() || line.contains("OVER")) {
+                games++;
+                player.awaitingNew = true;
+                send(channel, "NEW");
+                return false;
+            }
+        }
+        makeMove(channel, player);
+        return firstGame;
+    }
+
+    /**
+     * Plays a random legal move and sends it.
+     *
+     * @param channel The player's connection.
+     * @param player The player.
+     * @throws IOException if the move cannot be sent
+     */
+    private void makeMove(SocketChannel channel, SimulatedPlayer player) throws IOException {
+        long moves = player.game.getLegalMoves();
+        for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        int square = Long.numberOfTrailingZeros(moves);
+        player.game.play(Point.ofIndex(square));
+
+        player.sentAt = System.nanoTime();
+        send(channel, "MOVE " + Point.ofIndex(square).toNotation());
+    }
+
+    /**
+     * Sends a command.
+     *
+     * @param channel The connection.
+     * @param command The command, without the line end.
+     * @throws IOException if the command cannot be sent in one write
+     */
+    private static void send(SocketChannel channel, String command) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((command + "\n").getBytes(StandardCharsets.US_ASCII));
+        channel.write(buffer);
+        if (buffer.hasRemaining()) {
+            throw new IOException("The server is not reading its commands");
+        }
+    }
+
+    /**
+     * Takes a complete line out of a buffer that is being filled.
+     *
+     * @param input The buffer, in write mode.
+     * @return The line without its line end, or null if there is no complete line.
+     */
+    private static String nextLine(ByteBuffer input) {
+        for (int i = 0; i < input.position(); i++) {
+            if (input.get(i) == '\n') {
+                String line = new String(input.array(), 0, i, StandardCharsets.US_ASCII);
+                input.limit(input.position()).position(i + 1);
+                input.compact();
+                return line;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a move latency to the sample.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    private void recordLatency(long nanos) {
+        if (latencyCount == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencyCount * 2);
+        }
+        latencies[latencyCount++] = nanos;
+    }
+
+    /**
+     * Asks the server for its statistics.
+     *
+     * @param in The admin connection's input.
+     * @param out The admin connection's output.
+     * @return The answer.
+     * @throws IOException if the server does not answer
+     */
+    private static String stats(BufferedReader in, PrintWriter out) throws IOException {
+        out.println("STATS");
+        String line = in.readLine();
+        if (line == null || !line.startsWith("OK")) {
+            throw new IOException("Unexpected answer to STATS: " + line);
+        }
+        return line;
+    }
+
+    /**
+     * Reads the heap size from the answer to STATS.
+     *
+     * @param stats The answer.
+     * @return The heap in use in bytes.
+     */
+    private static long heapOf(String stats) {
+        return Long.parseLong(stats.substring(stats.indexOf("heap=") + 5).split(" ")[0]);
+    }
+
+    /**
+     * Prints the results of a run.
+     *
+     * @param connectMillis How long it took to connect every player and start their games.
+     * @param sessionHeap The server heap used by the sessions, or -1 if the server does not measure it.
+     * @param seconds How long the players played.
+     */
+    private void report(long connectMillis, long sessionHeap, double seconds) {
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+
+        System.out.printf("%,d players connected in %,d ms%n", players, connectMillis);
+        System.out.printf("%,d moves and %,d games in %.1f s: %,.0f moves/s%n", latencyCount, games, seconds, latencyCount / seconds);
+        if (latencyCount > 0) {
+            System.out.printf("Move latency: p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                sorted[latencyCount / 2] / 1e6, sorted[(int) (latencyCount * 0.99)] / 1e6, sorted[latencyCount - 1] / 1e6);
+        }
+        if (sessionHeap >= 0) {
+            double perSession = (double) sessionHeap / players;
+            System.out.printf("Server heap per session: %,.0f bytes, %,.0f sessions per GB%n", perSession, (1L << 30) / Math.max(1, perSession));
+        }
+        else {
+            System.out.println("Server heap per session: not measured, start the server with --measure-heap");
+        }
+        if (errors > 0) {
+            System.out.printf("%,d errors or illegal replies%n", errors);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 10;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+
+        new LoadGenerator(new InetSocketAddress(host, port), players, seed).run(seconds);
+    }
+}
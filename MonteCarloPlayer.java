@@ -0,0 +1,53 @@
+/**
+ * Plays the move found by a Monte Carlo tree search within a time or playout budget.
+ */
+class MonteCarloPlayer implements Player {
+    private final MonteCarloSearch search;
+    private final long timeLimitMillis;
+    private final long playoutLimit;
+
+    /**
+     * Creates a player that searches with a given Monte Carlo search. A playout budget with one
+     * thread makes the player's moves reproducible, a time budget does not.
+     *
+     * @param search The search to use. It should not be shared with other players, and it is closed with the player.
+     * @param timeLimitMillis The time budget per move in milliseconds, or 0 for none.
+     * @param playoutLimit The playout budget per move, or 0 for none.
+     */
+    public MonteCarloPlayer(MonteCarloSearch search, long timeLimitMillis, long playoutLimit) {
+        this.search = search;
+        this.timeLimitMillis = timeLimitMillis;
+        this.playoutLimit = playoutLimit;
+    }
+
+    /**
+     * Chooses the most visited move of the search.
+     *
+     * @param board The current state of the board.
+     * @param colour The colour the player is playing.
+     * @return The best move found within the budget.
+     */
+    @Override
+    public Point chooseMove(Board board, Tile colour) {
+        return search.search(board, colour, timeLimitMillis, playoutLimit).getBestMove();
+    }
+
+    /**
+     * Returns the name of this player.
+     *
+     * @return The name of this player, including its budget, threads and whether it uses RAVE.
+     */
+    @Override
+    public String getName() {
+        String budget = timeLimitMillis > 0 ? "mcts:" + timeLimitMillis : "playouts:" + playoutLimit;
+        return budget + (search.getThreads() > 1 ? ":" + search.getThreads() : "") + (search.isRave() ? ":rave" : "");
+    }
+
+    /**
+     * Shuts down the worker threads of the search.
+     */
+    @Override
+    public void close() {
+        search.close();
+    }
+}
@@ -0,0 +1,559 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses moves by Monte Carlo tree search: UCT over random playouts, optionally with RAVE.
+ *
+ * The tree lives in preallocated arrays indexed by node number, so a search allocates nothing
+ * however many nodes it grows. A node's children are numbered consecutively, so each node only
+ * stores its first child, its number of children and the move that leads to it. Once the node
+ * capacity is used up, the tree stops growing and playouts continue from its leaves.
+ *
+ * Playouts play random legal moves on a pair of bitboards until neither player can move.
+ * Results are counted in half points for the player who made the move into a node: 2 for a win,
+ * 1 for a draw. With RAVE, every node also counts the results of the playouts in which its move
+ * was played later on by the same player ("all moves as first"), and selection blends the two
+ * win rates, trusting the RAVE rate less as the node's own visits grow.
+ *
+ * Several threads grow one tree (tree parallelism). The counters are atomic, and a thread adds
+ * a virtual loss to every node on its way down, which it takes back with the real result, so
+ * the other threads look elsewhere in the meantime. A node is expanded by the one thread that
+ * claims it; the others play out from it until its children are published.
+ */
+class MonteCarloSearch implements AutoCloseable {
+    static final int DEFAULT_NODE_CAPACITY = 1 << 20;
+
+    // Exploration constant of UCT for win rates between 0 and 1
+    static final double EXPLORATION = 0.7;
+
+    // The number of visits at which a node's own results and its RAVE results count the same
+    static final double RAVE_EQUIVALENCE = 100;
+
+    // Visits added, as losses, to every node on a thread's path until its playout finishes
+    static final int VIRTUAL_LOSS = 3;
+
+    private static final int PASS = 64;
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+
+    // Value of a child that has never been visited, so that every child is tried once first
+    private static final double FIRST_PLAY_URGENCY = 1.1;
+
+    // A game has at most 60 moves and a pass between any two of them
+    private static final int MAX_DEPTH = 128;
+
+    // How many playouts a thread runs between clock checks
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    private final int threads;
+    private final int capacity;
+    private final ForkJoinPool pool;
+    private final Worker[] workers;
+
+    // The tree; node 0 is the root
+    private final AtomicIntegerArray firstChild;
+    private final byte[] childCount;
+    private final byte[] moves;
+    private final AtomicIntegerArray visits;
+    private final AtomicIntegerArray wins;
+    private final AtomicIntegerArray raveVisits;
+    private final AtomicIntegerArray raveWins;
+    private final AtomicInteger nodeCount = new AtomicInteger();
+
+    private final AtomicLong playoutsStarted = new AtomicLong();
+    private long playoutLimit;
+    private long deadline;
+    private volatile boolean stopped;
+    private boolean rave;
+
+    /**
+     * The state of one search thread, kept between searches so nothing is allocated per playout.
+     */
+    private static class Worker {
+        final int[] path = new int[MAX_DEPTH + 1];
+        long random;
+        long playouts;
+        long moveGenerations;
+        long movesGenerated;
+        int deepest;
+
+        /**
+         * Creates a worker.
+         *
+         * @param seed The seed of the worker's random numbers.
+         */
+        Worker(long seed) {
+            // Xorshift needs a state that is not 0
+            this.random = seed * 0x9E3779B97F4A7C15L | 1;
+        }
+
+        /**
+         * Returns the next random number (xorshift64*).
+         *
+         * @return A random long.
+         */
+        long nextLong() {
+            random ^= random >>> 12;
+            random ^= random << 25;
+            random ^= random >>> 27;
+            return random * 0x2545F4914F6CDD1DL;
+        }
+
+        /**
+         * Returns a random number below a bound.
+         *
+         * @param bound The bound, at most 64.
+         * @return A random number from 0 to bound - 1.
+         */
+        int nextInt(int bound) {
+            return (int) (((nextLong() >>> 32) * bound) >>> 32);
+        }
+    }
+
+    /**
+     * Creates a single-threaded search with the default node capacity.
+     *
+     * @param seed The seed of the playouts' random moves.
+     */
+    public MonteCarloSearch(long seed) {
+        this(1, DEFAULT_NODE_CAPACITY, seed);
+    }
+
+    /**
+     * Creates a search.
+     *
+     * @param threads The number of threads that grow the tree.
+     * @param capacity The most nodes the tree can have.
+     * @param seed The seed of the playouts' random moves. With one thread and a playout budget, it makes searches repeatable.
+     * @throws IllegalArgumentException if threads is less than 1 or the capacity cannot hold a root and its children
+     */
+    public MonteCarloSearch(int threads, int capacity, long seed) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A search needs at least one thread");
+        }
+        // A position can have as many legal moves as empty squares
+        if (capacity < 1 + Board.SIZE * Board.SIZE) {
+            throw new IllegalArgumentException("The tree needs room for at least the root and its children");
+        }
+        this.threads = threads;
+        this.capacity = capacity;
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(seed + i);
+        }
+
+        firstChild = new AtomicIntegerArray(capacity);
+        childCount = new byte[capacity];
+        moves = new byte[capacity];
+        visits = new AtomicIntegerArray(capacity);
+        wins = new AtomicIntegerArray(capacity);
+        raveVisits = new AtomicIntegerArray(capacity);
+        raveWins = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * Sets whether selection uses RAVE as well as each node's own results.
+     *
+     * @param rave True to use RAVE.
+     */
+    public void setRave(boolean rave) {
+        this.rave = rave;
+    }
+
+    /**
+     * Returns whether selection uses RAVE.
+     *
+     * @return True if RAVE is on.
+     */
+    public boolean isRave() {
+        return rave;
+    }
+
+    /**
+     * Returns the number of threads that grow the tree.
+     *
+     * @return The number of threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns how many nodes the last search's tree grew to.
+     *
+     * @return The number of nodes, at most the capacity.
+     */
+    public int getNodeCount() {
+        return Math.min(nodeCount.get(), capacity);
+    }
+
+    /**
+     * Searches for the best move for a player: the root move with the most visits.
+     *
+     * @param position The position to search. It is never modified.
+     * @param colour The colour of the player to move.
+     * @param timeLimitMillis The time budget in milliseconds, or 0 for no time limit.
+     * @param playoutLimit The number of playouts to run, or 0 for no playout limit.
+     * @return The best move, its win rate for the player to move in percent as the score, the depth
+     *         of the deepest path through the tree, and the number of playouts as the nodes.
+     * @throws IllegalArgumentException if there is neither a time nor a playout limit
+     */
+    public SearchResult search(Board position, Tile colour, long timeLimitMillis, long playoutLimit) {
+        if (timeLimitMillis <= 0 && playoutLimit <= 0) {
+            throw new IllegalArgumentException("A Monte Carlo search needs a time or playout limit");
+        }
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        long player = position.getDiscs(colour);
+        long opponent = position.getDiscs(VaildMoves.opposite(colour));
+
+        long legal = VaildMoves.getLegalMoves(player, opponent);
+        if (legal == 0) {
+            return new SearchResult(null, 0, 0, 0, System.currentTimeMillis() - start);
+        }
+        if (Long.bitCount(legal) == 1) {
+            return new SearchResult(Point.ofIndex(Long.numberOfTrailingZeros(legal)), 0, 0, 0, System.currentTimeMillis() - start);
+        }
+
+        this.deadline = timeLimitMillis > 0 ? startNanos + timeLimitMillis * 1_000_000 : Long.MAX_VALUE;
+        this.playoutLimit = playoutLimit > 0 ? playoutLimit : Long.MAX_VALUE;
+        this.stopped = false;
+        playoutsStarted.set(0);
+        resetNode(0);
+        nodeCount.set(1);
+        for (Worker worker : workers) {
+            worker.playouts = 0;
+            worker.moveGenerations = 0;
+            worker.movesGenerated = 0;
+            worker.deepest = 0;
+        }
+
+        if (pool == null) {
+            run(workers[0], player, opponent);
+        }
+        else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(threads);
+            for (Worker worker : workers) {
+                tasks.add(pool.submit(() -> run(worker, player, opponent)));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+
+        // The most visited root move is the most trusted one
+        int first = firstChild.get(0);
+        int best = first;
+        for (int child = first + 1; child < first + childCount[0]; child++) {
+            if (visits.get(child) > visits.get(best)) {
+                best = child;
+            }
+        }
+
+        long playouts = 0;
+        long generations = 0;
+        long generated = 0;
+        int depth = 0;
+        for (Worker worker : workers) {
+            playouts += worker.playouts;
+            generations += worker.moveGenerations;
+            generated += worker.movesGenerated;
+            depth = Math.max(depth, worker.deepest);
+        }
+        int score = visits.get(best) > 0 ? (int) Math.round(50.0 * wins.get(best) / visits.get(best)) : 0;
+
+        EngineMetrics.record("mcts", System.nanoTime() - startNanos, depth, playouts, 0, 0, generations, generated);
+        return new SearchResult(Point.ofIndex(moves[best]), score, depth, playouts, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Runs playouts until the search's budget is spent.
+     *
+     * @param worker The thread's state.
+     * @param player The discs of the player to move at the root.
+     * @param opponent The discs of the opponent at the root.
+     */
+    private void run(Worker worker, long player, long opponent) {
+        while (!stopped) {
+            long started = playoutsStarted.incrementAndGet();
+            if (started > playoutLimit || (started % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline)) {
+                stopped = true;
+                break;
+            }
+            simulate(worker, player, opponent);
+            worker.playouts++;
+        }
+    }
+
+    /**
+     * Runs one simulation: selects a path down the tree, expands its leaf, plays the game out
+     * at random and adds the result to every node on the path.
+     *
+     * @param worker The thread's state.
+     * @param player The discs of the player to move at the root.
+     * @param opponent The discs of the opponent at the root.
+     */
+    private void simulate(Worker worker, long player, long opponent) {
+        int[] path = worker.path;
+        int depth = 0;
+        int node = 0;
+        path[0] = 0;
+        visits.addAndGet(0, VIRTUAL_LOSS);
+
+        // Squares played by the root player and by the other player, for RAVE
+        long playedByRoot = 0;
+        long playedByOther = 0;
+
+        // Selection and expansion; player is always the one to move at node
+        while (true) {
+            int first = firstChild.get(node);
+            if (first == UNEXPANDED && (node == 0 || visits.get(node) > VIRTUAL_LOSS) && expand(worker, node, player, opponent)) {
+                first = firstChild.get(node);
+            }
+            if (first < 0 || childCount[node] == 0) {
+                break;
+            }
+
+            node = select(node, first, childCount[node]);
+            visits.addAndGet(node, VIRTUAL_LOSS);
+            path[++depth] = node;
+
+            int square = moves[node];
+            if (square != PASS) {
+                long flips = VaildMoves.flipsFor(square, player, opponent);
+                player |= flips | (1L << square);
+                opponent &= ~flips;
+                if ((depth & 1) == 1) {
+                    playedByRoot |= 1L << square;
+                }
+                else {
+                    playedByOther |= 1L << square;
+                }
+            }
+            long swap = player;
+            player = opponent;
+            opponent = swap;
+        }
+        worker.deepest = Math.max(worker.deepest, depth);
+
+        // Playout; the root player is to move when the number of plies from the root is even
+        boolean rootToMove = (depth & 1) == 0;
+        while (true) {
+            long legal = VaildMoves.getLegalMoves(player, opponent);
+            worker.moveGenerations++;
+            worker.movesGenerated += Long.bitCount(legal);
+            if (legal == 0) {
+                worker.moveGenerations++;
+                if (VaildMoves.getLegalMoves(opponent, player) == 0) {
+                    break;
+                }
+            }
+            else {
+                for (int skip = worker.nextInt(Long.bitCount(legal)); skip > 0; skip--) {
+                    legal &= legal - 1;
+                }
+                int square = Long.numberOfTrailingZeros(legal);
+                long flips = VaildMoves.flipsFor(square, player, opponent);
+                player |= flips | (1L << square);
+                opponent &= ~flips;
+                if (rootToMove) {
+                    playedByRoot |= 1L << square;
+                }
+                else {
+                    playedByOther |= 1L << square;
+                }
+            }
+
+            long swap = player;
+            player = opponent;
+            opponent = swap;
+            rootToMove = !rootToMove;
+        }
+
+        int rootDiscs = Long.bitCount(rootToMove ? player : opponent);
+        int otherDiscs = Long.bitCount(rootToMove ? opponent : player);
+        int rootResult = rootDiscs > otherDiscs ? 2 : rootDiscs == otherDiscs ? 1 : 0;
+
+        // Backpropagation; the move into a node at an odd depth was made by the root player
+        visits.addAndGet(0, 1 - VIRTUAL_LOSS);
+        for (int d = 1; d <= depth; d++) {
+            int result = (d & 1) == 1 ? rootResult : 2 - rootResult;
+            visits.addAndGet(path[d], 1 - VIRTUAL_LOSS);
+            wins.addAndGet(path[d], result);
+        }
+
+        if (rave) {
+            for (int d = 0; d <= depth; d++) {
+                int parent = path[d];
+                int first = firstChild.get(parent);
+                if (first < 0) {
+                    continue;
+                }
+                // The children of a node at an even depth are moves of the root player
+                boolean rootMoves = (d & 1) == 0;
+                long played = rootMoves ? playedByRoot : playedByOther;
+                int result = rootMoves ? rootResult : 2 - rootResult;
+                for (int child = first; child < first + childCount[parent]; child++) {
+                    int square = moves[child];
+                    if (square != PASS && (played & (1L << square)) != 0) {
+                        raveVisits.incrementAndGet(child);
+                        raveWins.addAndGet(child, result);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks the child to descend to by UCT, blended with RAVE when it is on.
+     *
+     * @param node The node.
+     * @param first The node's first child.
+     * @param count The node's number of children.
+     * @return The chosen child.
+     */
+    private int select(int node, int first, int count) {
+        double logVisits = Math.log(Math.max(1, visits.get(node)));
+
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < first + count; child++) {
+            int n = visits.get(child);
+            double value;
+            if (n == 0) {
+                value = FIRST_PLAY_URGENCY;
+            }
+            else {
+                double winRate = wins.get(child) / (2.0 * n);
+                if (rave) {
+                    int raveN = raveVisits.get(child);
+                    if (raveN > 0) {
+                        double beta = Math.sqrt(RAVE_EQUIVALENCE / (3.0 * n + RAVE_EQUIVALENCE));
+                        winRate = (1 - beta) * winRate + beta * raveWins.get(child) / (2.0 * raveN);
+                    }
+                }
+                value = winRate + EXPLORATION * Math.sqrt(logVisits / n);
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds the children of a leaf, unless another thread is already doing it or the tree is full.
+     *
+     * @param worker The thread's state.
+     * @param node The leaf.
+     * @param player The discs of the player to move at the leaf.
+     * @param opponent The discs of the opponent.
+     * @return True if the leaf now has its children.
+     */
+    private boolean expand(Worker worker, int node, long player, long opponent) {
+        if (!firstChild.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return false;
+        }
+
+        long legal = VaildMoves.getLegalMoves(player, opponent);
+        worker.moveGenerations++;
+        worker.movesGenerated += Long.bitCount(legal);
+        int count = Long.bitCount(legal);
+        if (count == 0) {
+            // A player with no moves passes, unless the game is over
+            worker.moveGenerations++;
+            count = VaildMoves.getLegalMoves(opponent, player) == 0 ? 0 : 1;
+        }
+
+        // Once the tree is full, a thread that raced past the check leaves its nodes unused
+        int first = count == 0 || nodeCount.get() + count > capacity ? 0 : nodeCount.getAndAdd(count);
+        if (count > 0 && (first == 0 || first + count > capacity)) {
+            firstChild.set(node, UNEXPANDED);
+            return false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            int child = first + i;
+            resetNode(child);
+            if (legal == 0) {
+                moves[child] = PASS;
+            }
+            else {
+                moves[child] = (byte) Long.numberOfTrailingZeros(legal);
+                legal &= legal - 1;
+            }
+        }
+        childCount[node] = (byte) count;
+
+        // Publishing the first child makes the children visible to the other threads
+        firstChild.set(node, first);
+        return true;
+    }
+
+    /**
+     * Clears a node's statistics and marks it unexpanded.
+     *
+     * @param node The node.
+     */
+    private void resetNode(int node) {
+        visits.set(node, 0);
+        wins.set(node, 0);
+        raveVisits.set(node, 0);
+        raveWins.set(node, 0);
+        childCount[node] = 0;
+        firstChild.set(node, UNEXPANDED);
+    }
+
+    /**
+     * Shuts down the worker threads.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Measures playouts per second on a few positions, so hardware can be sized for a time budget.
+     *
+     * @param args The milliseconds per position, the number of threads, and "rave" to use RAVE.
+     */
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        boolean rave = args.length > 2 && args[2].equals("rave");
+
+        try (MonteCarloSearch search = new MonteCarloSearch(threads, DEFAULT_NODE_CAPACITY, 1)) {
+            search.setRave(rave);
+            GameState game = new GameState();
+            Random random = new Random(1);
+
+            System.out.printf("%d threads%s, %d ms per position%n", threads, rave ? ", RAVE" : "", millis);
+            for (int plies : new int[] {0, 20, 40}) {
+                while (game.getMoveCount() < plies && !game.isGameOver()) {
+                    long legal = game.getLegalMoves();
+                    for (int skip = random.nextInt(Long.bitCount(legal)); skip > 0; skip--) {
+                        legal &= legal - 1;
+                    }
+                    game.play(Point.ofIndex(Long.numberOfTrailingZeros(legal)));
+                }
+
+                // The first search warms up the JIT
+                search.search(game.getBoard(), game.getCurrentPlayer(), millis / 4, 0);
+                SearchResult result = search.search(game.getBoard(), game.getCurrentPlayer(), millis, 0);
+                System.out.printf("%d empties: %s, %d%% wins, depth %d, %,d nodes, %,d playouts/s%n",
+                    game.getBoard().getNumberOfEmptySquares(), result.getBestMove(), result.getScore(), result.getDepth(),
+                    search.getNodeCount(), result.getNodesPerSecond());
+            }
+        }
+    }
+}
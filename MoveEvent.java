@@ -0,0 +1,51 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for every move an engine chooses, committed by {@link EngineMetrics#record}.
+ *
+ * Record with e.g. java -XX:StartFlightRecording=filename=moves.jfr ... and read the events with
+ * jfr print --events othello.Move moves.jfr. The event is committed after the move is chosen, so its
+ * own timestamp is the end of the move and the thinking time is a field.
+ */
+@Name("othello.Move")
+@Label("Engine Move")
+@Category("Othello")
+@Description("A move chosen by an engine, with the statistics of its search")
+@StackTrace(false)
+class MoveEvent extends jdk.jfr.Event {
+    @Label("Engine")
+    String engine;
+
+    @Label("Thinking Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long thinkingTime;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Nodes per Second")
+    long nodesPerSecond;
+
+    @Label("Transposition Table Probes")
+    long tableProbes;
+
+    @Label("Transposition Table Hit Rate")
+    @Percentage
+    double tableHitRate;
+
+    @Label("Branching Factor")
+    @Description("Average number of legal moves found each time the engine generated moves")
+    double branchingFactor;
+
+    @Label("Move Generations")
+    long moveGenerations;
+}
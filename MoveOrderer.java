@@ -0,0 +1,208 @@
+/**
+ * Decides the order in which a search tries the moves of a position. Alpha-beta cuts off the most when the best
+ * move comes first, so every node asks the orderer for its move list.
+ *
+ * Moves are ranked by, in order: the move stored in the transposition table, the two killer moves of the ply
+ * (moves that caused a cutoff in a sibling position), and then a score made of the history table (how often
+ * a square has caused cutoffs, weighted by depth), the square's usual value and, optionally, fastest-first:
+ * how few replies the move leaves the opponent.
+ *
+ * Move lists are kept in arrays per ply that are allocated once, so ordering never allocates.
+ * An orderer belongs to one search engine and is not thread safe.
+ */
+class MoveOrderer {
+    // Deep enough for a whole game, including passes
+    static final int MAX_PLY = 128;
+
+    // A move needs an empty square, so no position has more legal moves than squares
+    private static final int MAX_MOVES = Board.SIZE * Board.SIZE;
+
+    private static final int TABLE_MOVE_KEY = Integer.MAX_VALUE;
+    private static final int FIRST_KILLER_KEY = 1 << 29;
+    private static final int SECOND_KILLER_KEY = 1 << 28;
+
+    // History scores are halved between searches and capped so they never reach the killer keys
+    private static final int HISTORY_LIMIT = 1 << 24;
+
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long X_AND_C_SQUARES = 0x42C300000000C342L;
+    private static final int CORNER_BONUS = 1 << 20;
+    private static final int X_AND_C_PENALTY = 1 << 20;
+    private static final int MOBILITY_WEIGHT = 1 << 16;
+
+    private final int[][] moveSquares = new int[MAX_PLY][MAX_MOVES];
+    private final int[][] moveKeys = new int[MAX_PLY][MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[] history = new int[Board.SIZE * Board.SIZE];
+
+    private int fastestFirstDepth;
+
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    /**
+     * Creates an orderer with no history.
+     */
+    public MoveOrderer() {
+        clearKillers();
+    }
+
+    /**
+     * Sets how deep the remaining search must be for moves to be sorted fastest-first as well.
+     * Counting the opponent's replies costs a move generation per move, which only pays off high in the tree,
+     * so it is off by default.
+     *
+     * @param fastestFirstDepth The smallest remaining depth to sort fastest-first at, or 0 to never do so.
+     */
+    public void setFastestFirstDepth(int fastestFirstDepth) {
+        this.fastestFirstDepth = fastestFirstDepth;
+    }
+
+    /**
+     * Prepares for a new search: forgets the killer moves and halves the history, so recent cutoffs count most.
+     */
+    public void newSearch() {
+        clearKillers();
+        for (int square = 0; square < history.length; square++) {
+            history[square] >>= 1;
+        }
+    }
+
+    /**
+     * Forgets the killer moves of every ply.
+     */
+    private void clearKillers() {
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = TranspositionTable.NO_MOVE;
+            plyKillers[1] = TranspositionTable.NO_MOVE;
+        }
+    }
+
+    /**
+     * Fills the move list of a ply in the order the moves should be tried.
+     *
+     * @param ply The distance from the root of the search, which selects the move list and the killers.
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param moves The bitboard of legal moves.
+     * @param tableMove The move stored in the transposition table, or NO_MOVE.
+     * @param depth The remaining depth of the search.
+     * @return The number of moves in the list, which {@link #getMoves(int)} returns.
+     */
+    public int order(int ply, long player, long opponent, long moves, int tableMove, int depth) {
+        int[] squares = moveSquares[ply];
+        int[] keys = moveKeys[ply];
+        int[] plyKillers = killers[ply];
+        boolean fastestFirst = fastestFirstDepth > 0 && depth >= fastestFirstDepth;
+        int count = 0;
+
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long bit = moves & -moves;
+            moves ^= bit;
+
+            int key;
+            if (square == tableMove) {
+                key = TABLE_MOVE_KEY;
+            }
+            else if (square == plyKillers[0]) {
+                key = FIRST_KILLER_KEY;
+            }
+            else if (square == plyKillers[1]) {
+                key = SECOND_KILLER_KEY;
+            }
+            else {
+                key = history[square];
+                if ((bit & CORNERS) != 0) {
+                    key += CORNER_BONUS;
+                }
+                else if ((bit & X_AND_C_SQUARES) != 0) {
+                    key -= X_AND_C_PENALTY;
+                }
+                if (fastestFirst) {
+                    long flips = VaildMoves.flipsFor(square, player, opponent);
+                    long replies = VaildMoves.getLegalMoves(opponent & ~flips, player | flips | bit);
+                    key -= (Long.bitCount(replies) + Long.bitCount(replies & CORNERS)) * MOBILITY_WEIGHT;
+                }
+            }
+
+            // Insertion sort, highest key first
+            int i = count++;
+            while (i > 0 && keys[i - 1] < key) {
+                squares[i] = squares[i - 1];
+                keys[i] = keys[i - 1];
+                i--;
+            }
+            squares[i] = square;
+            keys[i] = key;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the move list of a ply, as filled by the last call to {@link #order}.
+     *
+     * @param ply The distance from the root of the search.
+     * @return The square indexes of the moves, best first.
+     */
+    public int[] getMoves(int ply) {
+        return moveSquares[ply];
+    }
+
+    /**
+     * Records a move that caused a cutoff, so it is tried earlier in similar positions.
+     *
+     * @param ply The distance from the root of the search.
+     * @param square The square index of the move.
+     * @param depth The remaining depth of the search; deeper cutoffs count for more.
+     * @param index Where the move was in the move list.
+     */
+    public void recordCutoff(int ply, int square, int depth, int index) {
+        cutoffs++;
+        if (index == 0) {
+            firstMoveCutoffs++;
+        }
+
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != square) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = square;
+        }
+        history[square] = Math.min(history[square] + depth * depth, HISTORY_LIMIT);
+    }
+
+    /**
+     * Returns how many cutoffs have been recorded since the statistics were last reset.
+     *
+     * @return The number of cutoffs.
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Returns how many cutoffs came from the first move tried.
+     *
+     * @return The number of cutoffs caused by the first move in the list.
+     */
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     * Returns how often the first move tried caused the cutoff, the usual measure of move ordering quality.
+     *
+     * @return The fraction of cutoffs caused by the first move, or 0 if there were none.
+     */
+    public double getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * Sets the cutoff counters back to zero.
+     */
+    public void resetStatistics() {
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+}
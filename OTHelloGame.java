@@ -1,22 +1,40 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Scanner;
 
 /**
- * Represents an Othello game.
+ * Represents an Othello game played on the console.
+ *
+ * Each instance owns its game and its input, so several games can run in one JVM.
+ * Set the system property othello.record to true to save each finished game to the game archive
+ * and the position index in the working directory.
  */
 class OTHelloGame {
-    private static Board board = new Board();
-    private static VaildMoves checker = new VaildMoves(board);
+    private static final long HARD_AI_TIME_MILLIS = 1000;
+    static final String RECORD_PROPERTY = "othello.record";
+
+    private final GameState game = new GameState();
+    private final Scanner input;
+
+    /**
+     * Constructor for OTHelloGame class.
+     *
+     * @param input A Scanner object used to get user input.
+     */
+    public OTHelloGame(Scanner input) {
+        this.input = input;
+    }
 
     /**
      * Gets valid input from the user and returns it as a Point object.
      *
-     * @param input A Scanner object used to get user input from the console.
      * @param ValidMoves A HashMap containing valid moves for the current player.
      * @return A Point object representing the user's valid move.
      */
-    private static Point getValidInput(Scanner input, HashMap<Point, ArrayList<Point>> ValidMoves) {
+    private Point getValidInput(HashMap<Point, ArrayList<Point>> ValidMoves) {
         Point playerMove = null;
 
         // Keep running this until the user enters a valid move
@@ -25,10 +43,10 @@ class OTHelloGame {
                     // coonver player input to a point
                     playerMove = Point.valueOf(input.nextLine());
 
-                    if (board.isPointOnBoard(playerMove) && ValidMoves.containsKey(playerMove)) {
+                    if (game.getBoard().isPointOnBoard(playerMove) && ValidMoves.containsKey(playerMove)) {
                         break; 
                     }
-                    else if (!board.isPointOnBoard(playerMove)) {
+                    else if (!game.getBoard().isPointOnBoard(playerMove)) {
                         System.out.println("The coordinate is out of bounds");
                         System.out.println("Try again: ");
                     }
@@ -47,79 +65,124 @@ class OTHelloGame {
     /**
      * Runs the game.
      */
-    public static void runGame() {
+    public void runGame() {
         System.out.println("\n\nWelcome to Othello");
-        System.out.println("To enter a coordinate type in (a letter for x axis, then a number for y axis)");
+        System.out.println("To enter a coordinate type in (a letter from A to H for the column, then a number from 1 to 8 for the row)");
         System.out.println("Like this A5");
 
-        Scanner input = new Scanner(System.in);
-
         boolean AIGame = false;
+        AI easyAI = new AI();
+        SearchEngine hardAI = null;
         switch (gameModeSelection(input)) {
             case 1:
                 AIGame = false;
                 break;
             case 2: 
                 AIGame = true;
+                break;
+            case 3:
+                AIGame = true;
+                hardAI = new SearchEngine();
+                hardAI.setOpeningBook(OpeningBook.openIfExists(Path.of(OpeningBook.DEFAULT_FILE)));
+                hardAI.setEvaluator(PatternEvaluator.getShared());
         }
+        PositionIndex history = PositionIndex.openIfExists(Path.of(PositionIndex.DEFAULT_DIRECTORY));
 
         // The game will only end when not player has any valid moves left
-        while(checker.getValidPlayerMoves(Tile.BLACK).size() > 0 || checker.getValidPlayerMoves(Tile.WHITE).size() > 0) {
-
-            // Handle the black player's moves
-            HashMap<Point, ArrayList<Point>> blackMoves = checker.getValidPlayerMoves(Tile.BLACK);
-   
-            if (blackMoves.size() > 0) {
-                System.out.println("\n" + board.toString(blackMoves));
+        while (!game.isGameOver()) {
+            Tile colour = game.getCurrentPlayer();
+            String name = colour == Tile.BLACK ? "Black" : "White";
+            String other = colour == Tile.BLACK ? "White" : "Black";
 
-                System.out.println("\nBlack's Turn. Type in your coordinate: ");
-
-                Point playerMove = getValidInput(input, blackMoves);
-
-                board.flipAllPieces(blackMoves.get(playerMove));
-                board.setPiece(new Piece(Tile.BLACK), playerMove);
-                checker.updateBoard(board);
+            if (game.wasPassed()) {
+                System.out.println("\n" + other + " has no valid moves and passes.");
             }
 
+            // Handle the human players' moves
+            if (colour == Tile.BLACK || AIGame == false) {
+                HashMap<Point, ArrayList<Point>> validMoves = game.getValidMoves();
+                System.out.println("\n" + game.getBoard().toString(validMoves));
+                if (history != null) {
+                    printHistory(history.lookup(game.getBoard(), colour));
+                }
 
-            // Handle the white player's moves
-            HashMap<Point, ArrayList<Point>> whiteMoves = checker.getValidPlayerMoves(Tile.WHITE);
-
-            if (whiteMoves.size() > 0 && AIGame == false) {
-                System.out.println("\n" + board.toString(whiteMoves));
-
-                System.out.println("White's Turn. Type in your coordinate: ");
-
-                Point playerMove = getValidInput(input, whiteMoves);
+                System.out.println("\n" + name + "'s Turn. Type in your coordinate: ");
 
-                board.flipAllPieces(whiteMoves.get(playerMove));
-                board.setPiece(new Piece(Tile.WHITE), playerMove);
-                checker.updateBoard(board);
+                game.play(getValidInput(validMoves));
             }
             // Handle the AI's moves
-            else if (checker.getValidPlayerMoves(Tile.WHITE).size() > 0) {
-                Point AIMove = AI.makeMove(board, whiteMoves);
-                
+            else {
+                Point AIMove = hardAI != null ? hardAI.search(game.getBoard(), Tile.WHITE, HARD_AI_TIME_MILLIS, 0).getBestMove() : easyAI.chooseMove(game.getBoard(), game.getValidMoves());
+
                 System.out.println("\nAI placed a white piece at " + AIMove.toString());
 
-                board.flipAllPieces(whiteMoves.get(AIMove));
-                board.setPiece(new Piece(Tile.WHITE), AIMove);
-                checker.updateBoard(board);
+                game.play(AIMove);
             }
         }
 
         // Handle the end game
-        System.out.println("\n" + board.toString());
+        System.out.println("\n" + game.getBoard().toString());
         System.out.println("There are no more moves any player can play. Counting pieces...");
-        if (board.getNumberOfBlackPieces() > board.getNumberOfWhitePieces()) {
+        if (game.getDiscDifference() > 0) {
             System.out.println("Black has more pieces. Black won!");
         }
-        else if (board.getNumberOfBlackPieces() < board.getNumberOfWhitePieces()) {
+        else if (game.getDiscDifference() < 0) {
             System.out.println("White has more pieces. White won!");
         }
         else {
             System.out.println("Both players have the same number of pieces. Tie game!");
         }
+
+        try {
+            if (history != null) {
+                history.close();
+            }
+        } catch (IOException e) {
+            System.out.println("The position index could not be closed: " + e.getMessage());
+        }
+
+        // Keep the game so it can be replayed later, but only when asked to, so playing never writes files by surprise
+        if (Boolean.getBoolean(RECORD_PROPERTY)) {
+            saveGame(hardAI != null ? "Hard AI" : AIGame ? "AI" : "Player 2");
+        }
+    }
+
+    /**
+     * Saves the finished game to the game archive and brings the position index up to date,
+     * so the next game's hints include this one.
+     *
+     * @param whitePlayer The name of the white player.
+     */
+    private void saveGame(String whitePlayer) {
+        try (GameArchive archive = new GameArchive(Path.of(GameArchive.DEFAULT_FILE))) {
+            long number = archive.append(game.toRecord("Player 1", whitePlayer));
+            System.out.println("Saved as game " + number + " in " + GameArchive.DEFAULT_FILE);
+
+            try (PositionIndex index = new PositionIndex(Path.of(PositionIndex.DEFAULT_DIRECTORY))) {
+                index.update(archive);
+            }
+        } catch (IOException e) {
+            System.out.println("The game could not be saved: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the moves most often played in a position in earlier games.
+     *
+     * @param statistics The statistics of the position.
+     */
+    private static void printHistory(PositionIndex.Statistics statistics) {
+        if (statistics.getOccurrences() == 0) {
+            return;
+        }
+
+        StringBuilder str = new StringBuilder("Played " + statistics.getOccurrences() + " times before:");
+        List<Point> moves = statistics.getMoves();
+        for (int i = 0; i < Math.min(3, moves.size()); i++) {
+            Point move = moves.get(i);
+            str.append(String.format(" %s (%d games, %+.1f)", move, statistics.getCount(move), statistics.getAverageScore(move)));
+        }
+        System.out.println(str);
     }
 
     /**
@@ -132,6 +195,7 @@ class OTHelloGame {
         System.out.println("Select Game Mode:");
         System.out.println("  1. 2 Player Mode");
         System.out.println("  2. Vs AI Mode");
+        System.out.println("  3. Vs Hard AI Mode");
         while (true) {
             String userResponse = input.nextLine();
             if (userResponse.matches("(\\s+)?1(\\s+)?")) {
@@ -140,10 +204,14 @@ class OTHelloGame {
             else if (userResponse.matches("(\\s+)?2(\\s+)?")) {
                 return 2;
             }
+            else if (userResponse.matches("(\\s+)?3(\\s+)?")) {
+                return 3;
+            }
         }
     }
 
     public static void main(String[] args) {
-        runGame();
+        EngineMetrics.enableIfRequested();
+        new OTHelloGame(new Scanner(System.in)).runGame();
     }
 }
\ No newline at end of file
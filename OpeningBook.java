@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only opening book: a sorted file of position hash to move and score records.
+ *
+ * The file is memory-mapped and searched in place with a binary search, so a lookup reads a few
+ * longs from the mapping and never deserialises anything. Positions are stored in canonical form
+ * (see {@link CanonicalPosition}), so one record covers all 8 symmetric positions.
+ *
+ * File layout (big-endian): the magic number, the format version and the record count as ints,
+ * then the records sorted by hash (as unsigned numbers), with the best-scoring move of each position first.
+ * Each record is the hash (long), the move's square index in the canonical position (byte),
+ * an unused byte and the score for the player to move (short).
+ */
+class OpeningBook {
+    static final String DEFAULT_FILE = "opening-book.bin";
+
+    static final int MAGIC = 0x4F544842;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 12;
+    static final int RECORD_BYTES = 12;
+
+    private final MappedByteBuffer records;
+    private final int count;
+
+    /**
+     * Opens and maps an opening book file.
+     *
+     * @param file The book file.
+     * @throws IOException if the file cannot be read or is not an opening book
+     */
+    public OpeningBook(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (records.capacity() < HEADER_BYTES || records.getInt(0) != MAGIC || records.getInt(4) != VERSION) {
+            throw new IOException("Not an opening book: " + file);
+        }
+        count = records.getInt(8);
+        if ((long) count * RECORD_BYTES + HEADER_BYTES > records.capacity()) {
+            throw new IOException("Opening book is truncated: " + file);
+        }
+    }
+
+    /**
+     * Opens the opening book file if it exists.
+     *
+     * @param file The book file.
+     * @return The opening book, or null if there is no readable book at that path.
+     */
+    public static OpeningBook openIfExists(Path file) {
+        if (!Files.isReadable(file)) {
+            return null;
+        }
+        try {
+            return new OpeningBook(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the book move for a position.
+     *
+     * @param board The position.
+     * @param colour The colour of the player to move.
+     * @return The book move in the board's own orientation, or null if the position is not in the book.
+     */
+    public Point lookup(Board board, Tile colour) {
+        CanonicalPosition canonical = board.canonical();
+        int index = find(canonical.getHash(colour));
+        if (index < 0) {
+            return null;
+        }
+        return Point.ofIndex(canonical.fromCanonical(moveAt(index)));
+    }
+
+    /**
+     * Returns the book score for a position.
+     *
+     * @param board The position.
+     * @param colour The colour of the player to move.
+     * @return The score of the book move for the player to move, or 0 if the position is not in the book.
+     */
+    public int score(Board board, Tile colour) {
+        int index = find(board.canonical().getHash(colour));
+        return index < 0 ? 0 : scoreAt(index);
+    }
+
+    /**
+     * Finds the first record of a key with a binary search.
+     *
+     * @param key The key to look for.
+     * @return The index of the first record with that key, or -1 if there is none.
+     */
+    int find(long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(middle), key) < 0) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low < count && keyAt(low) == key ? low : -1;
+    }
+
+    /**
+     * Returns the key of a record.
+     *
+     * @param index The index of the record.
+     * @return The position hash of the record.
+     */
+    private long keyAt(int index) {
+        return records.getLong(HEADER_BYTES + index * RECORD_BYTES);
+    }
+
+    /**
+     * Returns the move of a record.
+     *
+     * @param index The index of the record.
+     * @return The square index of the move in the canonical position.
+     */
+    int moveAt(int index) {
+        return records.get(HEADER_BYTES + index * RECORD_BYTES + 8);
+    }
+
+    /**
+     * Returns the score of a record.
+     *
+     * @param index The index of the record.
+     * @return The score of the move for the player to move.
+     */
+    int scoreAt(int index) {
+        return records.getShort(HEADER_BYTES + index * RECORD_BYTES + 10);
+    }
+
+    /**
+     * Returns the number of records in the book.
+     *
+     * @return The number of records.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Writes a book file from records that are already sorted.
+     *
+     * @param file The file to write.
+     * @param keys The position hashes, sorted as unsigned numbers.
+     * @param moves The canonical move of each record.
+     * @param scores The score of each record.
+     * @param count The number of records to write.
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path file, long[] keys, byte[] moves, short[] scores, int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(count);
+
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < RECORD_BYTES) {
+                    drain(channel, buffer);
+                }
+                buffer.putLong(keys[i]).put(moves[i]).put((byte) 0).putShort(scores[i]);
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Writes out everything in a buffer and clears it.
+     *
+     * @param channel The channel to write to.
+     * @param buffer The buffer to empty.
+     * @throws IOException if the write fails
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
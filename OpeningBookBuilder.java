@@ -0,0 +1,258 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Builds opening book files offline, from engine self-play or from imported game transcripts.
+ *
+ * Usage:
+ *   java OpeningBookBuilder selfplay [book file] [games] [book plies] [milliseconds per move]
+ *   java OpeningBookBuilder import [book file] [transcript file] [book plies]
+ *
+ * A transcript file has one game per line in standard notation, e.g. "f5d6c3d3c4f4",
+ * with columns a to h and rows numbered 1 to 8 (row 1 is y = 0 on this board).
+ *
+ * Every score in the book is on the evaluator's scale, for the player to move. Engine scores are stored
+ * as they are, and final disc differences (from transcripts, or from a search that saw the end of the game)
+ * are converted with {@link #SCORE_PER_DISC}, so both sources can be averaged together.
+ */
+class OpeningBookBuilder {
+    // Self-play games start with this many random moves so they do not all follow the same line
+    private static final int RANDOM_PLIES = 4;
+
+    // What a disc of final margin is worth on the evaluator's scale, where a corner is worth 100:
+    // holding a corner is usually worth about ten discs by the end of the game
+    static final int SCORE_PER_DISC = 10;
+
+    private final TreeMap<Long, BookPosition> positions = new TreeMap<Long, BookPosition>(Long::compareUnsigned);
+
+    /**
+     * The moves seen in one canonical position and the total score of each.
+     */
+    private static class BookPosition {
+        final long[] scoreSums = new long[64];
+        final int[] counts = new int[64];
+    }
+
+    /**
+     * Adds a move played in a position to the book.
+     *
+     * @param board The position before the move.
+     * @param colour The colour of the player to move.
+     * @param move The move played.
+     * @param score The score of the move for the player to move, on the evaluator's scale.
+     */
+    public void add(Board board, Tile colour, Point move, int score) {
+        CanonicalPosition canonical = board.canonical();
+        BookPosition position = positions.computeIfAbsent(canonical.getHash(colour), k -> new BookPosition());
+        int square = canonical.toCanonical(move.getIndex());
+        position.scoreSums[square] += score;
+        position.counts[square]++;
+    }
+
+    /**
+     * Writes the book, with the moves of each position ordered from best to worst average score.
+     *
+     * @param file The book file to write.
+     * @return The number of records written.
+     * @throws IOException if the file cannot be written
+     */
+    public int write(Path file) throws IOException {
+        ArrayList<long[]> records = new ArrayList<long[]>();
+        for (Map.Entry<Long, BookPosition> entry : positions.entrySet()) {
+            BookPosition position = entry.getValue();
+            int first = records.size();
+
+            for (int square = 0; square < 64; square++) {
+                if (position.counts[square] > 0) {
+                    long average = position.scoreSums[square] / position.counts[square];
+                    records.add(new long[] {entry.getKey(), square, average});
+                }
+            }
+            records.subList(first, records.size()).sort((a, b) -> Long.compare(b[2], a[2]));
+        }
+
+        long[] keys = new long[records.size()];
+        byte[] moves = new byte[records.size()];
+        short[] scores = new short[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            keys[i] = records.get(i)[0];
+            moves[i] = (byte) records.get(i)[1];
+            scores[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, records.get(i)[2]));
+        }
+        OpeningBook.write(file, keys, moves, scores, keys.length);
+        return keys.length;
+    }
+
+    /**
+     * Plays engine games and adds the engine's choice in every opening position to the book.
+     *
+     * @param games The number of games to play.
+     * @param bookPlies How many moves of each game go into the book.
+     * @param millisPerMove How long the engine thinks about each move.
+     * @param seed The seed of the random first moves.
+     */
+    public void selfPlay(int games, int bookPlies, long millisPerMove, long seed) {
+        SearchEngine engine = new SearchEngine();
+        Random random = new Random(seed);
+
+        for (int game = 0; game < games; game++) {
+            GameState state = new GameState();
+
+            for (int ply = 0; ply < bookPlies && !state.isGameOver(); ply++) {
+                Board board = state.getBoard();
+                Tile colour = state.getCurrentPlayer();
+                long moves = state.getLegalMoves();
+
+                Point move;
+                if (ply < RANDOM_PLIES) {
+                    for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                        moves &= moves - 1;
+                    }
+                    move = Point.ofIndex(Long.numberOfTrailingZeros(moves));
+                }
+                else {
+                    SearchResult result = engine.search(board, colour, millisPerMove, 0);
+                    move = result.getBestMove();
+                    add(board, colour, move, bookScore(result));
+                }
+
+                state.play(move);
+            }
+        }
+    }
+
+    /**
+     * Converts an engine score to the book's scale. Exact solver scores and won or lost games found by
+     * the search are final disc differences, which are converted; heuristic scores are kept as they are.
+     *
+     * @param result The engine's result for the move.
+     * @return The score of the move for the player to move, on the evaluator's scale.
+     */
+    static int bookScore(SearchResult result) {
+        int score = result.getScore();
+        if (result.isExact()) {
+            return score * SCORE_PER_DISC;
+        }
+        else if (score >= SearchEngine.WIN_SCORE - Board.SIZE * Board.SIZE) {
+            return (score - SearchEngine.WIN_SCORE) * SCORE_PER_DISC;
+        }
+        else if (score <= -SearchEngine.WIN_SCORE + Board.SIZE * Board.SIZE) {
+            return (score + SearchEngine.WIN_SCORE) * SCORE_PER_DISC;
+        }
+        return score;
+    }
+
+    /**
+     * Adds the opening moves of game transcripts to the book, scored by each game's final disc difference.
+     * Nothing is added from a transcript that cannot be replayed.
+     *
+     * @param transcripts The transcript file, one game per line.
+     * @param bookPlies How many moves of each game go into the book.
+     * @return The number of games imported.
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a transcript is not a legal game, with its line number in the message
+     */
+    public int importGames(Path transcripts, int bookPlies) throws IOException {
+        int games = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(transcripts)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    importGame(line, bookPlies);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+                games++;
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Replays one transcript and adds its opening moves to the book.
+     *
+     * @param transcript The moves of the game in standard notation.
+     * @param bookPlies How many moves go into the book.
+     * @throws IllegalArgumentException if the transcript is not a list of squares or contains an illegal move
+     */
+    private void importGame(String transcript, int bookPlies) {
+        if (transcript.length() % 2 != 0) {
+            throw new IllegalArgumentException("The transcript has an odd number of characters");
+        }
+        int plies = transcript.length() / 2;
+        GameState game = new GameState();
+        Board[] positions = new Board[plies];
+        Tile[] colours = new Tile[plies];
+        Point[] moves = new Point[plies];
+
+        // A player with no moves passes without a mark in the transcript, which the game state handles
+        for (int ply = 0; ply < plies; ply++) {
+            String notation = transcript.substring(2 * ply, 2 * ply + 2);
+            Point move = Point.ofNotation(notation);
+            if (move == Point.OFF_BOARD) {
+                throw new IllegalArgumentException("Move " + (ply + 1) + " (\"" + notation + "\") is not a square");
+            }
+            positions[ply] = new Board(game.getBoard());
+            colours[ply] = game.getCurrentPlayer();
+            moves[ply] = move;
+
+            if (game.isGameOver()) {
+                throw new IllegalArgumentException("The game is over before move " + (ply + 1));
+            }
+            if (!game.isLegal(move)) {
+                throw new IllegalArgumentException("Move " + (ply + 1) + " (" + notation + ") is not legal");
+            }
+            game.play(move);
+        }
+
+        int blackLead = game.getDiscDifference() * SCORE_PER_DISC;
+        for (int ply = 0; ply < Math.min(plies, bookPlies); ply++) {
+            add(positions[ply], colours[ply], moves[ply], colours[ply] == Tile.BLACK ? blackLead : -blackLead);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: java OpeningBookBuilder selfplay [book file] [games] [book plies] [milliseconds per move]");
+            System.out.println("       java OpeningBookBuilder import [book file] [transcript file] [book plies]");
+            return;
+        }
+
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        Path book = Path.of(args[1]);
+
+        if (args[0].equals("selfplay")) {
+            int games = Integer.parseInt(args[2]);
+            int plies = args.length > 3 ? Integer.parseInt(args[3]) : 12;
+            long millis = args.length > 4 ? Long.parseLong(args[4]) : 100;
+            builder.selfPlay(games, plies, millis, System.nanoTime());
+        }
+        else if (args[0].equals("import")) {
+            int plies = args.length > 3 ? Integer.parseInt(args[3]) : 12;
+            try {
+                System.out.println("Imported " + builder.importGames(Path.of(args[2]), plies) + " games");
+            } catch (IllegalArgumentException e) {
+                System.out.println("Cannot import " + args[2] + ": " + e.getMessage());
+                return;
+            }
+        }
+        else {
+            System.out.println("Unknown mode: " + args[0]);
+            return;
+        }
+
+        System.out.println("Wrote " + builder.write(book) + " records to " + book);
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Searches one position on several threads at once ("Lazy SMP").
+ *
+ * Every worker runs its own iterative-deepening search of the same root, and they all share one
+ * lock-free transposition table, so each worker's results speed up the others. Workers are staggered:
+ * odd workers start one ply deeper, and each worker tries a different root move first.
+ * Worker 0 owns the clock; when it finishes, the others are told to stop. The move played is the one
+ * from the deepest finished iteration, with ties going to the lowest worker number. How deep each
+ * worker gets depends on how the threads are scheduled and on what the others have stored in the table,
+ * so the search is not deterministic: the same position can get a different move or score from one
+ * search to the next.
+ *
+ * Memory does not grow with the number of threads: the workers share one table, and only worker 0
+ * runs the endgame solver, so there is only one solver table as well.
+ */
+class ParallelSearch implements AutoCloseable {
+    private final int threads;
+    private final TranspositionTable table;
+    private final SearchEngine[] engines;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a parallel search whose workers share one transposition table of the default size,
+     * the same size a single SearchEngine uses.
+     *
+     * @param threads The number of worker threads.
+     */
+    public ParallelSearch(int threads) {
+        this(threads, new TranspositionTable(SearchEngine.DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * Creates a parallel search that shares a given transposition table between its workers.
+     *
+     * @param threads The number of worker threads.
+     * @param table The transposition table the workers share.
+     * @throws IllegalArgumentException if threads is less than 1
+     */
+    public ParallelSearch(int threads, TranspositionTable table) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A search needs at least one thread");
+        }
+        this.threads = threads;
+        this.table = table;
+        this.engines = new SearchEngine[threads];
+        for (int i = 0; i < threads; i++) {
+            engines[i] = new SearchEngine(table);
+
+            // Endgames are solved by worker 0 alone, so the other workers never create a solver and its table
+            if (i > 0) {
+                engines[i].setEndgameThreshold(0);
+            }
+        }
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Searches for the best move for a player on all worker threads.
+     *
+     * @param position The position to search. It is never modified.
+     * @param colour The colour of the player to move.
+     * @param timeLimitMillis The time budget in milliseconds, or 0 for no time limit.
+     * @param nodeLimit The node budget shared by all workers, or 0 for no node limit.
+     * @return The combined result: the best move of the deepest finished iteration and the nodes of all workers.
+     */
+    public SearchResult search(Board position, Tile colour, long timeLimitMillis, long nodeLimit) {
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        long deadline = timeLimitMillis > 0 ? start + timeLimitMillis : Long.MAX_VALUE;
+        long nodesPerWorker = nodeLimit > 0 ? Math.max(1, nodeLimit / threads) : 0;
+
+        // The endgame solver runs on a single thread
+        if (position.getNumberOfEmptySquares() <= engines[0].getEndgameThreshold()) {
+            return engines[0].search(position, colour, timeLimitMillis, nodeLimit);
+        }
+
+        table.newSearch();
+        for (SearchEngine engine : engines) {
+            engine.clearStop();
+        }
+        long probes = table.getProbes();
+        long hits = table.getHits();
+
+        List<ForkJoinTask<SearchResult>> tasks = new ArrayList<ForkJoinTask<SearchResult>>(threads);
+        for (int i = 0; i < threads; i++) {
+            final int worker = i;
+            tasks.add(pool.submit(() -> {
+                SearchResult result = engines[worker].search(position, colour, deadline, nodesPerWorker, 1 + (worker & 1), worker);
+
+                // The main worker decides when the search is over
+                if (worker == 0) {
+                    for (SearchEngine engine : engines) {
+                        engine.stop();
+                    }
+                }
+                return result;
+            }));
+        }
+
+        SearchResult best = null;
+        long nodes = 0;
+        for (ForkJoinTask<SearchResult> task : tasks) {
+            SearchResult result = task.join();
+            nodes += result.getNodes();
+            if (best == null || result.getDepth() > best.getDepth()) {
+                best = result;
+            }
+        }
+
+        long generations = 0;
+        long generated = 0;
+        for (SearchEngine engine : engines) {
+            generations += engine.getMoveGenerations();
+            generated += engine.getMovesGenerated();
+        }
+        EngineMetrics.record("parallel", System.nanoTime() - startNanos, best.getDepth(), nodes,
+            table.getProbes() - probes, table.getHits() - hits, generations, generated);
+
+        return new SearchResult(best.getBestMove(), best.getScore(), best.getDepth(), nodes, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Sets the evaluation every worker scores positions with.
+     *
+     * @param evaluator The evaluation. It is shared by all the workers.
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        for (SearchEngine engine : engines) {
+            engine.setEvaluator(evaluator);
+        }
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return The number of worker threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the transposition table shared by the workers.
+     *
+     * @return The shared transposition table.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    /**
+     * Shuts down the worker threads.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
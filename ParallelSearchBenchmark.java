@@ -0,0 +1,86 @@
+import java.util.Random;
+
+/**
+ * Measures how node throughput of the parallel search scales with the number of threads.
+ *
+ * Usage: java ParallelSearchBenchmark [max threads] [milliseconds per position]
+ */
+class ParallelSearchBenchmark {
+    // Seeds for the random openings that make up the benchmark positions
+    private static final long[] POSITION_SEEDS = {1, 2, 3, 4, 5, 6};
+    private static final int OPENING_PLIES = 16;
+
+    /**
+     * Plays random moves from the starting position to get a midgame position.
+     *
+     * @param seed The seed of the random moves.
+     * @param plies The number of moves to play.
+     * @return The resulting board, with black to move if possible.
+     */
+    private static Board randomPosition(long seed, int plies) {
+        Random random = new Random(seed);
+        Board board = new Board();
+        Tile colour = Tile.BLACK;
+
+        for (int ply = 0; ply < plies; ply++) {
+            long moves = VaildMoves.getLegalMoves(board.getDiscs(colour), board.getDiscs(VaildMoves.opposite(colour)));
+            if (moves == 0) {
+                break;
+            }
+            for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                moves &= moves - 1;
+            }
+            board.makeMove(Long.numberOfTrailingZeros(moves), colour);
+            colour = VaildMoves.opposite(colour);
+        }
+        return board;
+    }
+
+    /**
+     * Returns the next thread count to measure: double the last one, but always finish on the maximum.
+     *
+     * @param threads The thread count just measured.
+     * @param maxThreads The largest thread count to measure.
+     * @return The next thread count, or a number above maxThreads when done.
+     */
+    private static int nextThreadCount(int threads, int maxThreads) {
+        if (threads < maxThreads && threads * 2 > maxThreads) {
+            return maxThreads;
+        }
+        return threads * 2;
+    }
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+
+        Board[] positions = new Board[POSITION_SEEDS.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = randomPosition(POSITION_SEEDS[i], OPENING_PLIES);
+        }
+
+        System.out.println("threads  nodes/s      speedup  avg depth");
+        long singleThreadSpeed = 0;
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            long nodes = 0;
+            long elapsed = 0;
+            int depths = 0;
+
+            try (ParallelSearch search = new ParallelSearch(threads)) {
+                for (Board position : positions) {
+                    search.getTranspositionTable().clear();
+                    SearchResult result = search.search(position, Tile.BLACK, millis, 0);
+                    nodes += result.getNodes();
+                    elapsed += result.getElapsedMillis();
+                    depths += result.getDepth();
+                }
+            }
+
+            long speed = nodes * 1000 / Math.max(1, elapsed);
+            if (threads == 1) {
+                singleThreadSpeed = speed;
+            }
+            System.out.printf("%7d  %11d  %7.2f  %9.1f%n", threads, speed, (double) speed / singleThreadSpeed, (double) depths / positions.length);
+        }
+    }
+}
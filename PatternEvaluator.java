@@ -0,0 +1,432 @@
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scores positions by looking up the contents of edge, corner and diagonal patterns in weight tables,
+ * plus mobility, potential mobility and stable discs.
+ *
+ * Every pattern is read in one fixed orientation from one of the 8 mirrored copies of the board, so
+ * all four edges (for example) share one table. The discs in a pattern are gathered with shifts and masks
+ * and turned into a base-3 index (empty, mine, theirs) with a lookup table, so a full evaluation is a few
+ * dozen table loads. There is a set of tables for each game phase, chosen by the number of discs on the board.
+ *
+ * Weights come from a file (see {@link #load(Path)}), so they can be retrained without code changes.
+ * Without a file, hand-made weights based on the usual square values are used.
+ *
+ * Weights file layout (big-endian): the magic number, the format version, the number of phases and
+ * the number of weights per phase as ints, then every phase's weights as shorts, in the order of the
+ * table offsets below.
+ */
+class PatternEvaluator implements Evaluator {
+    static final String DEFAULT_FILE = "eval-weights.bin";
+
+    static final int MAGIC = 0x4F544857;
+    static final int VERSION = 2;
+
+    // Each phase covers five discs; the last one runs to the end of the game
+    static final int PHASES = 12;
+    private static final int DISCS_PER_PHASE = 5;
+
+    // Where each pattern's table starts in a phase's weights
+    static final int EDGE = 0;
+    static final int CORNER_3X3 = EDGE + 59049;
+    static final int CORNER_2X5 = CORNER_3X3 + 19683;
+    static final int DIAGONAL_8 = CORNER_2X5 + 59049;
+    static final int DIAGONAL_7 = DIAGONAL_8 + 6561;
+    static final int DIAGONAL_6 = DIAGONAL_7 + 2187;
+    static final int DIAGONAL_5 = DIAGONAL_6 + 729;
+    static final int DIAGONAL_4 = DIAGONAL_5 + 243;
+    static final int MOBILITY = DIAGONAL_4 + 81;
+    static final int POTENTIAL_MOBILITY = MOBILITY + 1;
+    static final int STABILITY = POTENTIAL_MOBILITY + 1;
+    static final int WEIGHTS_PER_PHASE = STABILITY + 1;
+
+    // Diagonals that start on column A and run down and to the right, by length
+    private static final long DIAGONAL_8_MASK = 0x8040201008040201L;
+    private static final long DIAGONAL_7_MASK = DIAGONAL_8_MASK << 8;
+    private static final long DIAGONAL_6_MASK = DIAGONAL_8_MASK << 16;
+    private static final long DIAGONAL_5_MASK = DIAGONAL_8_MASK << 24;
+    private static final long DIAGONAL_4_MASK = DIAGONAL_8_MASK << 32;
+
+    // Gathers one bit from each column into the top byte
+    private static final long COLUMN_GATHER = 0x0101010101010101L;
+
+    private static final long CORNERS = 0x8100000000000081L;
+
+    private static final long NOT_FILE_A = 0xFEFEFEFEFEFEFEFEL;
+    private static final long NOT_FILE_H = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final int LIMIT = SearchEngine.WIN_SCORE / 2;
+
+    // TERNARY[bits] reads the binary digits of bits as base-3 digits
+    private static final int[] TERNARY = new int[1 << 10];
+
+    static {
+        for (int bits = 1; bits < TERNARY.length; bits++) {
+            int highest = 31 - Integer.numberOfLeadingZeros(bits);
+            TERNARY[bits] = TERNARY[bits & ~(1 << highest)] + pow3(highest);
+        }
+    }
+
+    private final short[][] weights;
+
+    /**
+     * Holds the evaluator that is loaded the first time it is needed.
+     */
+    private static class Shared {
+        static final PatternEvaluator INSTANCE = loadOrDefault(Path.of(DEFAULT_FILE));
+    }
+
+    /**
+     * Creates an evaluator with the built-in weights.
+     */
+    public PatternEvaluator() {
+        weights = new short[PHASES][];
+        short[] defaults = defaultWeights();
+        for (int phase = 0; phase < PHASES; phase++) {
+            weights[phase] = defaults.clone();
+        }
+    }
+
+    /**
+     * Creates an evaluator with given weights.
+     *
+     * @param weights The weights of each phase, WEIGHTS_PER_PHASE for each of the PHASES phases. They are not copied.
+     * @throws IllegalArgumentException if there are too few phases or weights
+     */
+    public PatternEvaluator(short[][] weights) {
+        if (weights.length != PHASES) {
+            throw new IllegalArgumentException("Expected weights for " + PHASES + " phases");
+        }
+        for (short[] phase : weights) {
+            if (phase.length != WEIGHTS_PER_PHASE) {
+                throw new IllegalArgumentException("Expected " + WEIGHTS_PER_PHASE + " weights per phase");
+            }
+        }
+        this.weights = weights;
+    }
+
+    /**
+     * Loads an evaluator from a weights file.
+     *
+     * @param file The weights file.
+     * @return The evaluator.
+     * @throws IOException if the file cannot be read or is not a weights file for this version
+     */
+    public static PatternEvaluator load(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < 16 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != PHASES || buffer.getInt(12) != WEIGHTS_PER_PHASE) {
+            throw new IOException("Not a weights file: " + file);
+        }
+        if (buffer.capacity() < 16 + 2L * PHASES * WEIGHTS_PER_PHASE) {
+            throw new IOException("Weights file is truncated: " + file);
+        }
+
+        short[][] weights = new short[PHASES][WEIGHTS_PER_PHASE];
+        buffer.position(16);
+        for (short[] phase : weights) {
+            buffer.asShortBuffer().get(phase);
+            buffer.position(buffer.position() + 2 * WEIGHTS_PER_PHASE);
+        }
+        return new PatternEvaluator(weights);
+    }
+
+    /**
+     * Loads an evaluator from a weights file if there is one, and uses the built-in weights otherwise.
+     *
+     * @param file The weights file.
+     * @return The evaluator.
+     */
+    public static PatternEvaluator loadOrDefault(Path file) {
+        if (Files.isReadable(file)) {
+            try {
+                return load(file);
+            } catch (IOException e) {
+                System.err.println(e.getMessage() + ", using the built-in weights");
+            }
+        }
+        return new PatternEvaluator();
+    }
+
+    /**
+     * Returns one evaluator for the whole program, loaded from the default weights file if there is one.
+     *
+     * @return The shared evaluator.
+     */
+    public static PatternEvaluator getShared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Writes the weights of this evaluator to a file that {@link #load(Path)} can read.
+     *
+     * @param file The file to write. It is replaced if it exists.
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(PHASES);
+            out.writeInt(WEIGHTS_PER_PHASE);
+            for (short[] phase : weights) {
+                for (short weight : phase) {
+                    out.writeShort(weight);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the weights of one phase, e.g. for a tuner to adjust before saving.
+     *
+     * @param phase The phase, from 0 to PHASES - 1.
+     * @return The weights of that phase. Changes are seen by this evaluator.
+     */
+    short[] getWeights(int phase) {
+        return weights[phase];
+    }
+
+    /**
+     * Returns which phase's weights score a position.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @return The phase, from 0 to PHASES - 1.
+     */
+    static int phaseOf(long player, long opponent) {
+        return Math.min((Long.bitCount(player | opponent) - 4) / DISCS_PER_PHASE, PHASES - 1);
+    }
+
+    /**
+     * Scores a position for the player to move.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @return The score from the point of view of the player to move.
+     */
+    @Override
+    public int evaluate(long player, long opponent) {
+        short[] w = weights[phaseOf(player, opponent)];
+
+        // The board seen from each corner, rows first (p0..p3) and columns first (q0..q3)
+        long p0 = player;
+        long p1 = Symmetry.flipVertical(player);
+        long p2 = Symmetry.flipHorizontal(player);
+        long p3 = Symmetry.flipVertical(p2);
+        long q0 = Symmetry.flipDiagonal(p0);
+        long q1 = Symmetry.flipDiagonal(p1);
+        long q2 = Symmetry.flipDiagonal(p2);
+        long q3 = Symmetry.flipDiagonal(p3);
+        long o0 = opponent;
+        long o1 = Symmetry.flipVertical(opponent);
+        long o2 = Symmetry.flipHorizontal(opponent);
+        long o3 = Symmetry.flipVertical(o2);
+        long r0 = Symmetry.flipDiagonal(o0);
+        long r1 = Symmetry.flipDiagonal(o1);
+        long r2 = Symmetry.flipDiagonal(o2);
+        long r3 = Symmetry.flipDiagonal(o3);
+
+        int score = w[EDGE + edge(p0, o0)] + w[EDGE + edge(p1, o1)] + w[EDGE + edge(q0, r0)] + w[EDGE + edge(q2, r2)];
+
+        score += w[CORNER_3X3 + corner3x3(p0, o0)] + w[CORNER_3X3 + corner3x3(p1, o1)]
+            + w[CORNER_3X3 + corner3x3(p2, o2)] + w[CORNER_3X3 + corner3x3(p3, o3)];
+
+        score += w[CORNER_2X5 + corner2x5(p0, o0)] + w[CORNER_2X5 + corner2x5(p1, o1)]
+            + w[CORNER_2X5 + corner2x5(p2, o2)] + w[CORNER_2X5 + corner2x5(p3, o3)]
+            + w[CORNER_2X5 + corner2x5(q0, r0)] + w[CORNER_2X5 + corner2x5(q1, r1)]
+            + w[CORNER_2X5 + corner2x5(q2, r2)] + w[CORNER_2X5 + corner2x5(q3, r3)];
+
+        score += w[DIAGONAL_8 + line(p0, o0, DIAGONAL_8_MASK)] + w[DIAGONAL_8 + line(p2, o2, DIAGONAL_8_MASK)];
+        score += diagonals(w, DIAGONAL_7, DIAGONAL_7_MASK, p0, o0, q0, r0, p2, o2, q2, r2);
+        score += diagonals(w, DIAGONAL_6, DIAGONAL_6_MASK, p0, o0, q0, r0, p2, o2, q2, r2);
+        score += diagonals(w, DIAGONAL_5, DIAGONAL_5_MASK, p0, o0, q0, r0, p2, o2, q2, r2);
+        score += diagonals(w, DIAGONAL_4, DIAGONAL_4_MASK, p0, o0, q0, r0, p2, o2, q2, r2);
+
+        long empty = ~(player | opponent);
+        int mobility = Long.bitCount(VaildMoves.getLegalMoves(player, opponent)) - Long.bitCount(VaildMoves.getLegalMoves(opponent, player));
+        int potential = Long.bitCount(neighbours(opponent) & empty) - Long.bitCount(neighbours(player) & empty);
+        score += w[MOBILITY] * mobility + w[POTENTIAL_MOBILITY] * potential;
+
+        // Stable discs are rare until a corner is taken, so the work is skipped before then
+        if (((player | opponent) & CORNERS) != 0) {
+            score += w[STABILITY] * (Stability.countStable(player, opponent) - Stability.countStable(opponent, player));
+        }
+
+        return Math.max(-LIMIT, Math.min(LIMIT, score));
+    }
+
+    /**
+     * Adds up the four diagonals of one length that lie off the two main diagonals.
+     *
+     * @param w The weights of the phase.
+     * @param table Where the diagonal's table starts.
+     * @param mask The diagonal on the board copies.
+     * @param p0 The player's discs.
+     * @param o0 The opponent's discs.
+     * @param q0 The player's discs mirrored along the main diagonal.
+     * @param r0 The opponent's discs mirrored along the main diagonal.
+     * @param p2 The player's discs mirrored left to right.
+     * @param o2 The opponent's discs mirrored left to right.
+     * @param q2 The player's discs mirrored left to right, then along the main diagonal.
+     * @param r2 The opponent's discs mirrored left to right, then along the main diagonal.
+     * @return The sum of the four weights.
+     */
+    private static int diagonals(short[] w, int table, long mask, long p0, long o0, long q0, long r0, long p2, long o2, long q2, long r2) {
+        return w[table + line(p0, o0, mask)] + w[table + line(q0, r0, mask)] + w[table + line(p2, o2, mask)] + w[table + line(q2, r2, mask)];
+    }
+
+    /**
+     * Returns the index of the top edge, with the b2 and g2 X squares, of a board copy.
+     * The digits are a1 to h1, then b2 and g2.
+     *
+     * @param player The player's discs.
+     * @param opponent The opponent's discs.
+     * @return The base-3 index into the edge table.
+     */
+    private static int edge(long player, long opponent) {
+        long bits = player & 0xFF;
+        long other = opponent & 0xFF;
+        return TERNARY[(int) (bits | ((player >>> 1) & 0x100) | ((player >>> 5) & 0x200))]
+            + 2 * TERNARY[(int) (other | ((opponent >>> 1) & 0x100) | ((opponent >>> 5) & 0x200))];
+    }
+
+    /**
+     * Returns the index of the 3x3 square in the top left corner of a board copy.
+     * The digits are a1 to c1, a2 to c2, then a3 to c3.
+     *
+     * @param player The player's discs.
+     * @param opponent The opponent's discs.
+     * @return The base-3 index into the 3x3 corner table.
+     */
+    private static int corner3x3(long player, long opponent) {
+        return TERNARY[(int) ((player & 0x7) | ((player >>> 5) & 0x38) | ((player >>> 10) & 0x1C0))]
+            + 2 * TERNARY[(int) ((opponent & 0x7) | ((opponent >>> 5) & 0x38) | ((opponent >>> 10) & 0x1C0))];
+    }
+
+    /**
+     * Returns the index of the 2x5 rectangle along the top edge from the top left corner of a board copy.
+     * The digits are a1 to e1, then a2 to e2.
+     *
+     * @param player The player's discs.
+     * @param opponent The opponent's discs.
+     * @return The base-3 index into the 2x5 corner table.
+     */
+    private static int corner2x5(long player, long opponent) {
+        return TERNARY[(int) ((player & 0x1F) | ((player >>> 3) & 0x3E0))]
+            + 2 * TERNARY[(int) ((opponent & 0x1F) | ((opponent >>> 3) & 0x3E0))];
+    }
+
+    /**
+     * Returns the index of a line that has at most one square in each column, such as a diagonal.
+     *
+     * @param player The player's discs.
+     * @param opponent The opponent's discs.
+     * @param mask The squares of the line.
+     * @return The base-3 index of the line, with the square in column A as the lowest digit.
+     */
+    private static int line(long player, long opponent, long mask) {
+        return TERNARY[(int) (((player & mask) * COLUMN_GATHER) >>> 56)] + 2 * TERNARY[(int) (((opponent & mask) * COLUMN_GATHER) >>> 56)];
+    }
+
+    /**
+     * Returns every square next to a disc, in any of the 8 directions.
+     *
+     * @param discs The discs.
+     * @return A bitboard of the squares touching at least one of the discs.
+     */
+    static long neighbours(long discs) {
+        long sideways = ((discs << 1) & NOT_FILE_A) | ((discs >>> 1) & NOT_FILE_H);
+        long row = discs | sideways;
+        return sideways | (row << 8) | (row >>> 8);
+    }
+
+    /**
+     * Builds hand-made weights from the usual square values. Only the edge and corner patterns are weighted:
+     * corners are worth a lot, and the squares next to a corner are bad only while the corner is empty.
+     *
+     * @return The weights of one phase.
+     */
+    static short[] defaultWeights() {
+        short[] w = new short[WEIGHTS_PER_PHASE];
+
+        // The corner is in both edges and the 3x3 square, for 100 in total
+        int[] edgeValues = {30, -20, 10, 5, 5, 10, -20, 30, 0, 0};
+        for (int index = 0; index < CORNER_3X3 - EDGE; index++) {
+            int[] cells = digits(index, 10);
+            int score = 0;
+            for (int i = 0; i < 8; i++) {
+                int value = edgeValues[i];
+
+                // A C square next to a taken corner is as safe as any edge square
+                if ((i == 1 && cells[0] != 0) || (i == 6 && cells[7] != 0)) {
+                    value = 5;
+                }
+                score += sign(cells[i]) * value;
+            }
+            w[EDGE + index] = (short) score;
+        }
+
+        for (int index = 0; index < CORNER_2X5 - CORNER_3X3; index++) {
+            int[] cells = digits(index, 9);
+            int xSquare = cells[0] == 0 ? -50 : 5;
+            w[CORNER_3X3 + index] = (short) (40 * sign(cells[0]) + xSquare * sign(cells[4]) - 2 * sign(cells[5]) - 2 * sign(cells[7]) + sign(cells[8]));
+        }
+
+        w[MOBILITY] = 5;
+        w[POTENTIAL_MOBILITY] = 2;
+        w[STABILITY] = 10;
+        return w;
+    }
+
+    /**
+     * Splits a base-3 index into its digits.
+     *
+     * @param index The index.
+     * @param length The number of digits.
+     * @return The digits, lowest first: 0 for empty, 1 for the player's disc, 2 for the opponent's.
+     */
+    private static int[] digits(int index, int length) {
+        int[] cells = new int[length];
+        for (int i = 0; i < length; i++) {
+            cells[i] = index % 3;
+            index /= 3;
+        }
+        return cells;
+    }
+
+    /**
+     * Returns whose disc a cell holds as a sign.
+     *
+     * @param cell The base-3 digit of the cell.
+     * @return 1 for the player's disc, -1 for the opponent's and 0 for an empty square.
+     */
+    private static int sign(int cell) {
+        return cell == 1 ? 1 : cell == 2 ? -1 : 0;
+    }
+
+    /**
+     * Returns a power of 3.
+     *
+     * @param exponent The exponent.
+     * @return 3 to the power of the exponent.
+     */
+    private static int pow3(int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 3;
+        }
+        return result;
+    }
+}
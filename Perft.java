@@ -0,0 +1,207 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the leaf nodes of the game tree from the starting position to a fixed depth ("perft"),
+ * to check that move generation is correct and to measure how fast it is.
+ *
+ * A pass counts as a ply, and a finished game counts as a leaf however much depth is left,
+ * which matches the published Othello perft numbers.
+ *
+ * Usage: java Perft [depth] [threads] [--no-bulk] [--adapter]
+ *   --no-bulk  make every last-ply move instead of counting the legal moves
+ *   --adapter  walk the tree through VaildMoves.getValidPlayerMoves and Board.makeMove (single-threaded)
+ */
+class Perft {
+    // Published leaf counts from the starting position, indexed by depth
+    static final long[] KNOWN_COUNTS = {
+        1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L, 24571284L,
+        212258800L, 1939886636L, 18429641748L, 184042084512L
+    };
+
+    // The tree is split into tasks at this depth, which gives 56 subtrees from the start
+    private static final int SPLIT_DEPTH = 3;
+
+    private final boolean bulk;
+
+    /**
+     * Constructor for Perft class.
+     *
+     * @param bulk True to count the legal moves at the last ply instead of making them.
+     */
+    public Perft(boolean bulk) {
+        this.bulk = bulk;
+    }
+
+    /**
+     * Counts the leaves below a position.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param depth The number of plies to go.
+     * @return The number of leaf nodes.
+     */
+    public long count(long player, long opponent, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        long moves = VaildMoves.getLegalMoves(player, opponent);
+        if (moves == 0) {
+            // Pass if the opponent can move, otherwise the game is over and this is a leaf
+            if (VaildMoves.getLegalMoves(opponent, player) != 0) {
+                return count(opponent, player, depth - 1);
+            }
+            return 1;
+        }
+        if (depth == 1 && bulk) {
+            return Long.bitCount(moves);
+        }
+
+        long leaves = 0;
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+
+            long flips = VaildMoves.flipsFor(square, player, opponent);
+            leaves += count(opponent & ~flips, player | flips | (1L << square), depth - 1);
+        }
+        return leaves;
+    }
+
+    /**
+     * Counts the leaves below a position on several threads, one task per subtree at the split depth.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param depth The number of plies to go.
+     * @param threads The number of threads.
+     * @return The number of leaf nodes.
+     * @throws InterruptedException if interrupted while waiting for the threads
+     * @throws ExecutionException if a thread fails
+     */
+    public long count(long player, long opponent, int depth, int threads) throws InterruptedException, ExecutionException {
+        if (threads <= 1 || depth <= SPLIT_DEPTH) {
+            return count(player, opponent, depth);
+        }
+
+        // Positions at the split depth, stored as player/opponent pairs
+        List<long[]> subtrees = new ArrayList<long[]>();
+        long leaves = split(player, opponent, SPLIT_DEPTH, subtrees);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (long[] subtree : subtrees) {
+                results.add(pool.submit(() -> count(subtree[0], subtree[1], depth - SPLIT_DEPTH)));
+            }
+            for (Future<Long> result : results) {
+                leaves += result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return leaves;
+    }
+
+    /**
+     * Collects the positions a number of plies below a position, following the same pass rules as count.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @param depth The number of plies to go down.
+     * @param subtrees The list to add the positions to.
+     * @return The number of finished games found before reaching that depth, which are leaves themselves.
+     */
+    private static long split(long player, long opponent, int depth, List<long[]> subtrees) {
+        if (depth == 0) {
+            subtrees.add(new long[] {player, opponent});
+            return 0;
+        }
+
+        long moves = VaildMoves.getLegalMoves(player, opponent);
+        if (moves == 0) {
+            if (VaildMoves.getLegalMoves(opponent, player) != 0) {
+                return split(opponent, player, depth - 1, subtrees);
+            }
+            return 1;
+        }
+
+        long leaves = 0;
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+
+            long flips = VaildMoves.flipsFor(square, player, opponent);
+            leaves += split(opponent & ~flips, player | flips | (1L << square), depth - 1, subtrees);
+        }
+        return leaves;
+    }
+
+    /**
+     * Counts the leaves through the Point and HashMap API instead of the bitboards,
+     * to check that the adapter agrees with the bitboard move generator.
+     *
+     * @param board The position. It is restored before returning.
+     * @param colour The colour of the player to move.
+     * @param depth The number of plies to go.
+     * @return The number of leaf nodes.
+     */
+    public static long countWithAdapter(Board board, Tile colour, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        VaildMoves checker = new VaildMoves(board);
+        Tile opponent = VaildMoves.opposite(colour);
+        Set<Point> moves = checker.getValidPlayerMoves(colour).keySet();
+        if (moves.isEmpty()) {
+            if (!checker.getValidPlayerMoves(opponent).isEmpty()) {
+                return countWithAdapter(board, opponent, depth - 1);
+            }
+            return 1;
+        }
+
+        long leaves = 0;
+        for (Point move : moves) {
+            board.makeMove(move, colour);
+            leaves += countWithAdapter(board, opponent, depth - 1);
+            board.unmakeMove();
+        }
+        return leaves;
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+        int threads = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        boolean bulk = true;
+        boolean adapter = false;
+        for (String arg : args) {
+            if (arg.equals("--no-bulk")) {
+                bulk = false;
+            }
+            else if (arg.equals("--adapter")) {
+                adapter = true;
+            }
+        }
+
+        Board board = new Board();
+        Perft perft = new Perft(bulk);
+
+        for (int ply = 1; ply <= depth; ply++) {
+            long start = System.nanoTime();
+            long leaves = adapter
+                ? countWithAdapter(board, Tile.BLACK, ply)
+                : perft.count(board.getBlackDiscs(), board.getWhiteDiscs(), ply, threads);
+            long nanos = Math.max(1, System.nanoTime() - start);
+
+            String check = ply < KNOWN_COUNTS.length ? (leaves == KNOWN_COUNTS[ply] ? "OK" : "MISMATCH, expected " + KNOWN_COUNTS[ply]) : "";
+            System.out.printf("perft(%2d) = %,15d  %8.3f s  %,14.0f nodes/s  %s%n", ply, leaves, nanos / 1e9, leaves * 1e9 / nanos, check);
+        }
+    }
+}
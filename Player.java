@@ -0,0 +1,80 @@
+/**
+ * Something that can choose moves in a game: a person, the easy AI, the search engine...
+ *
+ * A player may keep state between moves, so each game should get its own player instance.
+ * Players that own threads release them in {@link #close()}, so close every player when its games are over.
+ */
+interface Player extends AutoCloseable {
+    /**
+     * Chooses a move.
+     *
+     * @param board The current state of the board. Players must not modify it.
+     * @param colour The colour the player is playing.
+     * @return A valid move. It is only called when the player has at least one valid move.
+     */
+    Point chooseMove(Board board, Tile colour);
+
+    /**
+     * Returns the name of this player, for reports and game records.
+     *
+     * @return The name of this player.
+     */
+    String getName();
+
+    /**
+     * Releases anything the player holds, such as worker threads. Most players hold nothing.
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Creates a player from a short description, as used on the command line:
+     * "easy" (AI.makeMove), "random", "search:[milliseconds]" or "nodes:[node budget]".
+     * Search players take ":pattern" on the end to score positions with the pattern evaluation.
+     * Monte Carlo players are "mcts:[milliseconds]" or "playouts:[playout budget]", optionally followed
+     * by ":[threads]" and ":rave".
+     *
+     * @param description The description of the player.
+     * @param seed The seed for players that make random choices.
+     * @return A new player, to be closed when its games are over.
+     * @throws IllegalArgumentException if the description is not recognised
+     */
+    static Player fromDescription(String description, long seed) {
+        String[] parts = description.split(":");
+        switch (parts[0]) {
+            case "easy":
+                return new EasyAIPlayer(seed);
+            case "random":
+                return new RandomPlayer(seed);
+            case "search":
+            case "nodes":
+                boolean timed = parts[0].equals("search");
+                long budget = parts.length > 1 ? Long.parseLong(parts[1]) : timed ? 100 : 100000;
+                SearchEngine engine = new SearchEngine();
+                if (parts.length > 2 && parts[2].equals("pattern")) {
+                    engine.setEvaluator(PatternEvaluator.getShared());
+                }
+                return new SearchPlayer(engine, timed ? budget : 0, timed ? 0 : budget);
+            case "mcts":
+            case "playouts":
+                boolean mctsTimed = parts[0].equals("mcts");
+                long mctsBudget = parts.length > 1 ? Long.parseLong(parts[1]) : mctsTimed ? 100 : 10000;
+                int threads = 1;
+                boolean rave = false;
+                for (int i = 2; i < parts.length; i++) {
+                    if (parts[i].equals("rave")) {
+                        rave = true;
+                    }
+                    else {
+                        threads = Integer.parseInt(parts[i]);
+                    }
+                }
+                MonteCarloSearch search = new MonteCarloSearch(threads, MonteCarloSearch.DEFAULT_NODE_CAPACITY, seed);
+                search.setRave(rave);
+                return new MonteCarloPlayer(search, mctsTimed ? mctsBudget : 0, mctsTimed ? 0 : mctsBudget);
+            default:
+                throw new IllegalArgumentException("Unknown player: " + description);
+        }
+    }
+}
@@ -1,54 +1,113 @@
 /**
  * Represents a point with a x and y component.
+ *
+ * Points are immutable flyweights: there is exactly one instance per square on the board,
+ * obtained through {@link #of(int, int)}, {@link #of(char, int)}, {@link #ofIndex(int)} or {@link #valueOf(String)}.
+ * Any coordinate that is not on the board resolves to the {@link #OFF_BOARD} sentinel.
+ *
+ * Squares are named in standard notation everywhere, on the console and in every file and protocol:
+ * a column letter from a to h and a row number from 1 to 8, so "d3" is x = 3, y = 2. Names are read
+ * with {@link #valueOf(String)} and written with {@link #toNotation()}.
  */
-class Point {
-    private int x;
-    private int y;
+final class Point {
+    private static final int SIZE = 8;
+    private static final Point[] SQUARES = new Point[SIZE * SIZE];
 
     /**
-     * Initializes a Point object with the given x and y coordinates.
+     * The sentinel returned for every coordinate that is not on the board.
+     */
+    public static final Point OFF_BOARD = new Point(-1, -1, -1);
+
+    static {
+        for (int square = 0; square < SQUARES.length; square++) {
+            SQUARES[square] = new Point(square % SIZE, square / SIZE, square);
+        }
+    }
+
+    private final int x;
+    private final int y;
+    private final int index;
+
+    /**
+     * Initializes a Point object with the given coordinates and square index.
      * 
      * @param X The x-coordinate of the point.
      * @param Y The y-coordinate of the point.
+     * @param index The square index (y * 8 + x) of the point.
      */
-    public Point(int X, int Y) {
+    private Point(int X, int Y, int index) {
         this.x = X;
         this.y = Y;
+        this.index = index;
     }
 
     /**
-     * Initializes a Point object with the given character-based x and integer-based y coordinates.
+     * Returns the point with the given x and y coordinates.
+     * 
+     * @param X The x-coordinate of the point.
+     * @param Y The y-coordinate of the point.
+     * @return The point of that square, or OFF_BOARD if the coordinates are not on the board.
+     */
+    public static Point of(int X, int Y) {
+        if (X < 0 || X >= SIZE || Y < 0 || Y >= SIZE) {
+            return OFF_BOARD;
+        }
+        return SQUARES[Y * SIZE + X];
+    }
+
+    /**
+     * Returns the point with the given character-based x and integer-based y coordinates.
      * 
      * @param X The character-based x-coordinate of the point.
      * @param Y The integer-based y-coordinate of the point.
+     * @return The point of that square, or OFF_BOARD if the coordinates are not on the board.
      */
-    public Point(char X, int Y) {
-        this.x = Character.toUpperCase(X) - 'A';
-        this.y = Y;
+    public static Point of(char X, int Y) {
+        return of(Character.toUpperCase(X) - 'A', Y);
+    }
+
+    /**
+     * Returns the point with the given square index.
+     * 
+     * @param square The square index (y * 8 + x) of the point.
+     * @return The point of that square.
+     * @throws IllegalArgumentException if the index is not between 0 and 63
+     */
+    public static Point ofIndex(int square) {
+        if (square < 0 || square >= SQUARES.length) {
+            throw new IllegalArgumentException("Square index out of range: " + square);
+        }
+        return SQUARES[square];
     }
 
     /**
-     * Returns a new Point object that is the sum of this point and another given point.
+     * Returns the point that is the sum of this point and another given point.
      * 
      * @param other The Point object to add to this point.
-     * @return The resulting Point object after addition.
+     * @return The resulting point after addition, or OFF_BOARD if it leaves the board.
      */
     public Point add(Point other) {
-        return new Point(x + other.x, y + other.y);
+        if (this == OFF_BOARD) {
+            return OFF_BOARD;
+        }
+        return of(x + other.x, y + other.y);
     }
 
     /**
-     * Returns a new Point object that is the difference between this point and another given point.
+     * Returns the point that is the difference between this point and another given point.
      * 
      * @param other The Point object to subtract from this point.
-     * @return The resulting Point object after subtraction.
+     * @return The resulting point after subtraction, or OFF_BOARD if it leaves the board.
      */
     public Point subtract(Point other) {
-        return new Point(x - other.x, y - other.y);
+        if (this == OFF_BOARD) {
+            return OFF_BOARD;
+        }
+        return of(x - other.x, y - other.y);
     }
 
     /**
-     * Returns a reference to this Point object.
+     * Returns a reference to this Point object. Points are immutable, so this is safe to share.
      * 
      * @return This Point object.
      */
@@ -75,30 +134,42 @@ class Point {
     }
 
     /**
-     * Sets the x-coordinate of this Point object to a new value.
+     * Returns the square index (y * 8 + x) of this point, which is also its bit in a bitboard.
      * 
-     * @param newX The new value for the x-coordinate of this Point object.
+     * @return The square index of this point, or -1 for OFF_BOARD.
      */
-    public void setX(int newX) {
-        x = newX;
+    public int getIndex() {
+        return index;
     }
 
     /**
-     * Sets the y-coordinate of this Point object to a new value.
+     * Returns whether this point is on the board.
      * 
-     * @param newY The new value for the y-coordinate of this Point object.
+     * @return True unless this is the OFF_BOARD sentinel.
      */
-    public void setY(int newY) {
-        x = newY;
+    public boolean isOnBoard() {
+        return this != OFF_BOARD;
     }
 
     /**
-     * Returns a string representation of this Point object in the form "(x, y)".
+     * Returns the name of this square in standard notation, e.g. "d3".
+     * 
+     * @return The column letter from a to h and the row number from 1 to 8, or "--" for OFF_BOARD.
+     */
+    public String toNotation() {
+        if (this == OFF_BOARD) {
+            return "--";
+        }
+        return "" + (char) ('a' + x) + (char) ('1' + y);
+    }
+
+    /**
+     * Returns a string representation of this Point object, its name in standard notation.
      * 
      * @return A string representation of this Point object.
      */
     public String toString() {
-        return String.format("(%d, %d)", x, y);
+        return toNotation();
     }
 
     /**
@@ -113,52 +184,48 @@ class Point {
 
     /**
    *
-   *@param point A string representation of a point in format "A 1"
-   *@return A new instance of class Point with coordinates from input string
+   *@param point A square in standard notation, e.g. "d3", "D3" or "D 3", where the row counts from 1
+   *@return The point with coordinates from input string, or OFF_BOARD if it is not on the board
    *@throws IllegalArgumentException if input string has invalid format
    */
     public static Point valueOf(String point) throws IllegalArgumentException {
         String pointString = point.strip();
         if (isPointFormat(point)) {
-            return new Point(pointString.charAt(0), Integer.valueOf(pointString.substring(pointString.length() - 1, pointString.length())));
+            return of(pointString.charAt(0), Integer.valueOf(pointString.substring(pointString.length() - 1, pointString.length())) - 1);
         }
         throw new IllegalArgumentException("Invalid Point Format");
     }
 
+    /**
+     * Reads a square in standard notation from untrusted text, such as a network message.
+     *
+     * @param notation The text, e.g. "d3".
+     * @return The point, or OFF_BOARD if the text is not a square on the board.
+     */
+    public static Point ofNotation(String notation) {
+        return isPointFormat(notation) ? valueOf(notation) : OFF_BOARD;
+    }
+
     /**
      * Returns a hash code value for this Point object.
      * 
-     * @return A hash code value for this Point object.
+     * @return The square index of this point.
      */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + x;
-        result = prime * result + y;
-        return result;
+        return index;
     }
 
     /**
      * Returns true if this Point object is equal to another given object.
+     * There is only one instance per square, so equality is identity.
      * 
      * @param obj The object to compare with this Point object.
      * @return True if the two objects are equal, false otherwise.
      */
     @Override
     public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        Point other = (Point) obj;
-        if (x != other.x)
-            return false;
-        if (y != other.y)
-            return false;
-        return true;
+        return this == obj;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,635 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk index of every position played in a game archive, with how often each move was played
+ * from it and how those games ended.
+ *
+ * Positions are keyed like the opening book, by the Zobrist hash of the canonical position and the
+ * player to move (see {@link CanonicalPosition#getHash(Tile)}), so the 8 symmetric
+ * forms of a position share their statistics. New games go into an in-memory buffer, which is written
+ * out as a sorted segment file when it fills up or the index is flushed. Segments are memory-mapped
+ * and binary searched, so a lookup costs O(log n) per segment, and once there are more than
+ * {@link #MAX_SEGMENTS} segments they are merged into one.
+ *
+ * The index is a directory. Its manifest lists the live segments and how many games have been
+ * indexed, and is replaced atomically after a segment is written, so a crash loses at most the
+ * buffered games, which {@link #update(GameArchive)} indexes again.
+ *
+ * Segment file layout (big-endian): the magic number, the format version and the record count as ints,
+ * then the records sorted by hash (as unsigned numbers) and then by move. Each record is the hash (long),
+ * the move's square index in the canonical position (byte), three unused bytes, the number of times
+ * the move was played (int) and the sum of the final disc differences of those games for the player
+ * who moved (long). A segment is mapped in one piece, so it is limited to about 89 million records.
+ */
+class PositionIndex implements AutoCloseable {
+    static final String DEFAULT_DIRECTORY = "positions";
+
+    static final int MAGIC = 0x4F545049;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 12;
+    static final int RECORD_BYTES = 24;
+
+    // Segments are merged once there are more than this many
+    static final int MAX_SEGMENTS = 8;
+
+    private static final String MANIFEST = "manifest";
+    private static final int DEFAULT_BUFFER_RECORDS = 1 << 18;
+
+    private final Path directory;
+    private final int bufferLimit;
+    private final ArrayList<Segment> segments = new ArrayList<Segment>();
+    private final HashMap<Long, BufferedPosition> buffer = new HashMap<Long, BufferedPosition>();
+
+    private int bufferedRecords;
+    private long games;
+    private int nextSegment;
+
+    /**
+     * The moves buffered for one canonical position, kept short because most positions have one move.
+     */
+    private static class BufferedPosition {
+        byte[] moves = new byte[2];
+        int[] counts = new int[2];
+        long[] scoreSums = new long[2];
+        int size;
+
+        /**
+         * Adds one play of a move.
+         *
+         * @param square The square index of the move in the canonical position.
+         * @param score The final disc difference for the player who moved.
+         * @return True if this is the first time the move is buffered.
+         */
+        boolean add(int square, int score) {
+            for (int i = 0; i < size; i++) {
+                if (moves[i] == square) {
+                    counts[i]++;
+                    scoreSums[i] += score;
+                    return false;
+                }
+            }
+
+            if (size == moves.length) {
+                moves = Arrays.copyOf(moves, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+                scoreSums = Arrays.copyOf(scoreSums, size * 2);
+            }
+            moves[size] = (byte) square;
+            counts[size] = 1;
+            scoreSums[size] = score;
+            size++;
+            return true;
+        }
+    }
+
+    /**
+     * A mapped segment file.
+     */
+    private static class Segment {
+        final int number;
+        final Path file;
+        final MappedByteBuffer records;
+        final int count;
+
+        /**
+         * Opens and maps a segment file.
+         *
+         * @param number The number of the segment.
+         * @param file The segment file.
+         * @throws IOException if the file cannot be read or is not an index segment
+         */
+        Segment(int number, Path file) throws IOException {
+            this.number = number;
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            if (records.capacity() < HEADER_BYTES || records.getInt(0) != MAGIC || records.getInt(4) != VERSION) {
+                throw new IOException("Not a position index segment: " + file);
+            }
+            count = records.getInt(8);
+            if ((long) count * RECORD_BYTES + HEADER_BYTES > records.capacity()) {
+                throw new IOException("Position index segment is truncated: " + file);
+            }
+        }
+
+        /**
+         * Finds the first record of a key with a binary search.
+         *
+         * @param key The key to look for.
+         * @return The index of the first record with that key, or -1 if there is none.
+         */
+        int find(long key) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (Long.compareUnsigned(keyAt(middle), key) < 0) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low < count && keyAt(low) == key ? low : -1;
+        }
+
+        /**
+         * Returns the key of a record.
+         *
+         * @param index The index of the record.
+         * @return The position hash of the record.
+         */
+        long keyAt(int index) {
+            return records.getLong(HEADER_BYTES + index * RECORD_BYTES);
+        }
+
+        /**
+         * Returns the move of a record.
+         *
+         * @param index The index of the record.
+         * @return The square index of the move in the canonical position.
+         */
+        int moveAt(int index) {
+            return records.get(HEADER_BYTES + index * RECORD_BYTES + 8);
+        }
+
+        /**
+         * Returns how many times the move of a record was played.
+         *
+         * @param index The index of the record.
+         * @return The number of plays.
+         */
+        int countAt(int index) {
+            return records.getInt(HEADER_BYTES + index * RECORD_BYTES + 12);
+        }
+
+        /**
+         * Returns the total result of the games in which the move of a record was played.
+         *
+         * @param index The index of the record.
+         * @return The sum of the final disc differences for the player who moved.
+         */
+        long scoreSumAt(int index) {
+            return records.getLong(HEADER_BYTES + index * RECORD_BYTES + 16);
+        }
+    }
+
+    /**
+     * The statistics of one position, with moves in the orientation of the board that was looked up.
+     */
+    static class Statistics {
+        private final int[] counts = new int[64];
+        private final long[] scoreSums = new long[64];
+        private int occurrences;
+
+        /**
+         * Returns how many times the position was played from.
+         *
+         * @return The number of times a move was played in the position.
+         */
+        public int getOccurrences() {
+            return occurrences;
+        }
+
+        /**
+         * Returns how many times a move was played in the position.
+         *
+         * @param move The move.
+         * @return The number of times it was played.
+         */
+        public int getCount(Point move) {
+            return counts[move.getIndex()];
+        }
+
+        /**
+         * Returns the average result of the games in which a move was played.
+         *
+         * @param move The move.
+         * @return The average final disc difference for the player who moved, or 0 if it was never played.
+         */
+        public double getAverageScore(Point move) {
+            int count = counts[move.getIndex()];
+            return count == 0 ? 0 : (double) scoreSums[move.getIndex()] / count;
+        }
+
+        /**
+         * Returns the moves played in the position, most played first.
+         *
+         * @return The moves, with ties in square order.
+         */
+        public List<Point> getMoves() {
+            ArrayList<Point> moves = new ArrayList<Point>();
+            for (int square = 0; square < 64; square++) {
+                if (counts[square] > 0) {
+                    moves.add(Point.ofIndex(square));
+                }
+            }
+            moves.sort((a, b) -> Integer.compare(counts[b.getIndex()], counts[a.getIndex()]));
+            return moves;
+        }
+
+        /**
+         * Adds plays of a move.
+         *
+         * @param square The square index of the move.
+         * @param count The number of plays.
+         * @param scoreSum The total result of those games.
+         */
+        private void add(int square, int count, long scoreSum) {
+            counts[square] += count;
+            scoreSums[square] += scoreSum;
+            occurrences += count;
+        }
+    }
+
+    /**
+     * Opens an index, creating it if it does not exist.
+     *
+     * @param directory The index directory.
+     * @throws IOException if the index cannot be read
+     */
+    public PositionIndex(Path directory) throws IOException {
+        this(directory, DEFAULT_BUFFER_RECORDS);
+    }
+
+    /**
+     * Opens an index, creating it if it does not exist.
+     *
+     * @param directory The index directory.
+     * @param bufferLimit How many records are buffered in memory before they are written as a segment.
+     * @throws IOException if the index cannot be read
+     */
+    public PositionIndex(Path directory, int bufferLimit) throws IOException {
+        if (bufferLimit < 1) {
+            throw new IllegalArgumentException("The buffer must hold at least one record");
+        }
+        this.directory = directory;
+        this.bufferLimit = bufferLimit;
+        Files.createDirectories(directory);
+
+        Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest)) {
+                String[] fields = line.strip().split(" ");
+                if (fields[0].equals("games")) {
+                    games = Long.parseLong(fields[1]);
+                }
+                else if (fields[0].equals("segment")) {
+                    int number = Integer.parseInt(fields[1]);
+                    segments.add(new Segment(number, segmentFile(number)));
+                    nextSegment = Math.max(nextSegment, number + 1);
+                }
+            }
+        }
+
+        // Segments that never made it into the manifest were cut short by a crash
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("segment-") && segments.stream().noneMatch(s -> s.file.getFileName().toString().equals(name))) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the index in a directory if there is one.
+     *
+     * @param directory The index directory.
+     * @return The index, or null if there is no readable index in that directory.
+     */
+    public static PositionIndex openIfExists(Path directory) {
+        if (!Files.isReadable(directory.resolve(MANIFEST))) {
+            return null;
+        }
+        try {
+            return new PositionIndex(directory);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds every position of a game to the index, scored by the game's final disc difference.
+     *
+     * @param record The game.
+     * @throws IOException if a full buffer cannot be written out
+     */
+    public synchronized void add(GameRecord record) throws IOException {
+        int blackLead = record.getBlackDiscs() - record.getWhiteDiscs();
+        byte[] moves = record.getMoves();
+        GameState game = new GameState();
+
+        for (byte move : moves) {
+            if (move != GameRecord.PASS) {
+                Tile colour = game.getCurrentPlayer();
+                CanonicalPosition canonical = game.getBoard().canonical();
+                BufferedPosition position = buffer.computeIfAbsent(canonical.getHash(colour), k -> new BufferedPosition());
+                if (position.add(canonical.toCanonical(move), colour == Tile.BLACK ? blackLead : -blackLead)) {
+                    bufferedRecords++;
+                }
+            }
+            GameRecord.playRecorded(game, move);
+        }
+        games++;
+
+        if (bufferedRecords >= bufferLimit) {
+            flush();
+        }
+    }
+
+    /**
+     * Indexes the games that were appended to an archive since the index last caught up with it.
+     *
+     * @param archive The archive the index was built from.
+     * @return The number of games added.
+     * @throws IOException if the archive cannot be read, is shorter than the index, or the index cannot be written
+     */
+    public synchronized long update(GameArchive archive) throws IOException {
+        long first = games;
+        long last = archive.size();
+        if (last < first) {
+            throw new IOException("The index has " + first + " games but the archive only has " + last);
+        }
+        for (long game = first; game < last; game++) {
+            add(archive.read(game));
+        }
+        flush();
+        return last - first;
+    }
+
+    /**
+     * Returns the statistics of a position.
+     *
+     * @param board The position.
+     * @param colour The colour of the player to move.
+     * @return The statistics, with no occurrences if the position has never been played from.
+     */
+    public synchronized Statistics lookup(Board board, Tile colour) {
+        CanonicalPosition canonical = board.canonical();
+        long key = canonical.getHash(colour);
+
+        Statistics statistics = new Statistics();
+        for (Segment segment : segments) {
+            int index = segment.find(key);
+            if (index >= 0) {
+                for (; index < segment.count && segment.keyAt(index) == key; index++) {
+                    int square = canonical.fromCanonical(segment.moveAt(index));
+                    statistics.add(square, segment.countAt(index), segment.scoreSumAt(index));
+                }
+            }
+        }
+
+        BufferedPosition position = buffer.get(key);
+        if (position != null) {
+            for (int i = 0; i < position.size; i++) {
+                statistics.add(canonical.fromCanonical(position.moves[i]), position.counts[i], position.scoreSums[i]);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns how many games have been indexed.
+     *
+     * @return The number of games.
+     */
+    public synchronized long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns how many segment files the index has.
+     *
+     * @return The number of segments.
+     */
+    public synchronized int getSegments() {
+        return segments.size();
+    }
+
+    /**
+     * Writes the buffered games out as a new segment, merging segments if there are too many.
+     *
+     * @throws IOException if the index cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (!buffer.isEmpty()) {
+            Long[] keys = buffer.keySet().toArray(new Long[0]);
+            Arrays.sort(keys, Long::compareUnsigned);
+
+            int number = nextSegment++;
+            Path file = segmentFile(number);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+                out.putInt(MAGIC).putInt(VERSION).putInt(bufferedRecords);
+
+                for (Long key : keys) {
+                    BufferedPosition position = buffer.get(key);
+                    Integer[] order = new Integer[position.size];
+                    for (int i = 0; i < order.length; i++) {
+                        order[i] = i;
+                    }
+                    Arrays.sort(order, (a, b) -> Integer.compare(position.moves[a], position.moves[b]));
+
+                    for (int i : order) {
+                        if (out.remaining() < RECORD_BYTES) {
+                            drain(channel, out);
+                        }
+                        putRecord(out, key, position.moves[i], position.counts[i], position.scoreSums[i]);
+                    }
+                }
+                drain(channel, out);
+                channel.force(false);
+            }
+
+            segments.add(new Segment(number, file));
+            buffer.clear();
+            bufferedRecords = 0;
+        }
+
+        if (segments.size() > MAX_SEGMENTS) {
+            merge();
+        }
+        writeManifest();
+    }
+
+    /**
+     * Merges every segment into one.
+     *
+     * @throws IOException if the merged segment cannot be written
+     */
+    private void merge() throws IOException {
+        int number = nextSegment++;
+        Path file = segmentFile(number);
+        int[] positions = new int[segments.size()];
+        int count = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+            out.putInt(MAGIC).putInt(VERSION).putInt(0);
+
+            // Take the smallest (key, move) of all segments each time, adding up the records of equal ones
+            while (true) {
+                long key = 0;
+                int move = -1;
+                for (int s = 0; s < segments.size(); s++) {
+                    Segment segment = segments.get(s);
+                    if (positions[s] < segment.count) {
+                        long candidate = segment.keyAt(positions[s]);
+                        int candidateMove = segment.moveAt(positions[s]);
+                        int compare = Long.compareUnsigned(candidate, key);
+                        if (move < 0 || compare < 0 || (compare == 0 && candidateMove < move)) {
+                            key = candidate;
+                            move = candidateMove;
+                        }
+                    }
+                }
+                if (move < 0) {
+                    break;
+                }
+
+                int plays = 0;
+                long scoreSum = 0;
+                for (int s = 0; s < segments.size(); s++) {
+                    Segment segment = segments.get(s);
+                    if (positions[s] < segment.count && segment.keyAt(positions[s]) == key && segment.moveAt(positions[s]) == move) {
+                        plays += segment.countAt(positions[s]);
+                        scoreSum += segment.scoreSumAt(positions[s]);
+                        positions[s]++;
+                    }
+                }
+
+                if (out.remaining() < RECORD_BYTES) {
+                    drain(channel, out);
+                }
+                putRecord(out, key, (byte) move, plays, scoreSum);
+                count++;
+            }
+            drain(channel, out);
+
+            out.putInt(count).flip();
+            channel.write(out, 8);
+            channel.force(false);
+        }
+
+        ArrayList<Segment> merged = new ArrayList<Segment>(segments);
+        segments.clear();
+        segments.add(new Segment(number, file));
+        writeManifest();
+        for (Segment segment : merged) {
+            Files.deleteIfExists(segment.file);
+        }
+    }
+
+    /**
+     * Replaces the manifest with one listing the current segments.
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    private void writeManifest() throws IOException {
+        ArrayList<String> lines = new ArrayList<String>();
+        lines.add("games " + games);
+        for (Segment segment : segments) {
+            lines.add("segment " + segment.number);
+        }
+
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        Files.write(temporary, lines);
+        Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the file of a segment.
+     *
+     * @param number The number of the segment.
+     * @return The path of the segment file.
+     */
+    private Path segmentFile(int number) {
+        return directory.resolve(String.format("segment-%06d.bin", number));
+    }
+
+    /**
+     * Adds a record to a buffer.
+     *
+     * @param out The buffer.
+     * @param key The position hash.
+     * @param move The square index of the move in the canonical position.
+     * @param count The number of times the move was played.
+     * @param scoreSum The total result of those games.
+     */
+    private static void putRecord(ByteBuffer out, long key, byte move, int count, long scoreSum) {
+        out.putLong(key).put(move).put((byte) 0).putShort((short) 0).putInt(count).putLong(scoreSum);
+    }
+
+    /**
+     * Writes out everything in a buffer and clears it.
+     *
+     * @param channel The channel to write to.
+     * @param buffer The buffer to empty.
+     * @throws IOException if the write fails
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes out the buffered games.
+     *
+     * @throws IOException if the index cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Brings an index up to date with an archive, then prints the statistics of a position.
+     *
+     * @param args The index directory, the archive file, and optionally the moves leading to the position in standard notation.
+     * @throws IOException if the archive or index cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java PositionIndex [index directory] [archive] [moves]");
+            return;
+        }
+
+        try (PositionIndex index = new PositionIndex(Path.of(args[0])); GameArchive archive = new GameArchive(Path.of(args[1]))) {
+            long start = System.nanoTime();
+            long added = index.update(archive);
+            System.out.printf("Indexed %,d new games in %d ms: %,d games in %d segments%n", added, (System.nanoTime() - start) / 1_000_000, index.getGames(), index.getSegments());
+
+            GameState game = new GameState();
+            String moves = args.length > 2 ? args[2] : "";
+            for (int i = 0; i + 1 < moves.length(); i += 2) {
+                game.play(Point.valueOf(moves.substring(i, i + 2)));
+            }
+
+            Statistics statistics = index.lookup(game.getBoard(), game.getCurrentPlayer());
+            System.out.println(game.getBoard().toString(game.getValidMoves()));
+            System.out.printf("%s to move, played %,d times%n", game.getCurrentPlayer(), statistics.getOccurrences());
+            for (Point move : statistics.getMoves()) {
+                System.out.printf("  %s  %,8d  %+6.1f%n", move.toNotation(), statistics.getCount(move), statistics.getAverageScore(move));
+            }
+        }
+    }
+}
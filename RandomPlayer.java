@@ -0,0 +1,43 @@
+import java.util.Random;
+
+/**
+ * Plays a random valid move. Useful as a baseline opponent.
+ */
+class RandomPlayer implements Player {
+    private final Random random;
+
+    /**
+     * Constructor for RandomPlayer class.
+     *
+     * @param seed The seed of the random moves.
+     */
+    public RandomPlayer(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Chooses a random valid move.
+     *
+     * @param board The current state of the board.
+     * @param colour The colour the player is playing.
+     * @return A random valid move.
+     */
+    @Override
+    public Point chooseMove(Board board, Tile colour) {
+        long moves = VaildMoves.getLegalMoves(board.getDiscs(colour), board.getDiscs(VaildMoves.opposite(colour)));
+        for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        return Point.ofIndex(Long.numberOfTrailingZeros(moves));
+    }
+
+    /**
+     * Returns the name of this player.
+     *
+     * @return The name of this player.
+     */
+    @Override
+    public String getName() {
+        return "random";
+    }
+}
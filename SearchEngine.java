@@ -0,0 +1,514 @@
+/**
+ * Finds the best move for a player with a negamax alpha-beta search.
+ *
+ * The search deepens one ply at a time until the caller's time or node budget runs out,
+ * and returns the best move of the deepest iteration that finished.
+ * Once few enough squares are empty, the position is handed to an {@link EndgameSolver} first,
+ * which plays perfectly to the end of the game if it can finish within half the budget.
+ * Positions already searched are remembered in a transposition table, which is kept between searches.
+ * An engine keeps its own copy of the board, so one instance should only run one search at a time.
+ */
+class SearchEngine {
+    static final int WIN_SCORE = 1000000;
+    private static final int INFINITY = 2000000;
+
+    // Positional value of each square for the side that owns it
+    private static final int[] SQUARE_WEIGHTS = {
+        100, -20, 10,  5,  5, 10, -20, 100,
+        -20, -50, -2, -2, -2, -2, -50, -20,
+         10,  -2,  1,  1,  1,  1,  -2,  10,
+          5,  -2,  1,  0,  0,  1,  -2,   5,
+          5,  -2,  1,  0,  0,  1,  -2,   5,
+         10,  -2,  1,  1,  1,  1,  -2,  10,
+        -20, -50, -2, -2, -2, -2, -50, -20,
+        100, -20, 10,  5,  5, 10, -20, 100
+    };
+    private static final int MOBILITY_WEIGHT = 5;
+
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long X_AND_C_SQUARES = 0x42C300000000C342L;
+
+    // How many nodes to search between clock checks
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    private final TranspositionTable table;
+    private final MoveOrderer orderer = new MoveOrderer();
+    private EndgameSolver solver;
+    private OpeningBook openingBook;
+    private Evaluator evaluator = SearchEngine::evaluate;
+    private int endgameThreshold = EndgameSolver.DEFAULT_THRESHOLD;
+    private int depthLimit;
+    private boolean scoreForcedMoves;
+
+    private Board board;
+    private long deadline;
+    private long nodeLimit;
+    private long nodes;
+    private boolean stopped;
+
+    // Counted for EngineMetrics: move generations in the search tree and the legal moves they found
+    private long moveGenerations;
+    private long movesGenerated;
+
+    // Set from another thread to end the search early
+    private volatile boolean stopRequested;
+
+    /**
+     * Creates an engine with a transposition table of the default size.
+     */
+    public SearchEngine() {
+        this(new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * Creates an engine that uses a given transposition table.
+     *
+     * @param table The transposition table to remember searched positions in.
+     */
+    public SearchEngine(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Returns the transposition table of this engine.
+     *
+     * @return The transposition table, including its hit and store statistics.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    /**
+     * Returns the move orderer of this engine.
+     *
+     * @return The move orderer, including its cutoff statistics.
+     */
+    public MoveOrderer getMoveOrderer() {
+        return orderer;
+    }
+
+    /**
+     * Sets the opening book to answer from before searching.
+     *
+     * @param openingBook The opening book, or null to always search.
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Sets the evaluation that scores the positions at the end of the search.
+     *
+     * @param evaluator The evaluation, e.g. a {@link PatternEvaluator}.
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Returns the evaluation that scores the positions at the end of the search.
+     *
+     * @return The evaluation.
+     */
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Sets how many empty squares a position may have for the endgame solver to take over.
+     *
+     * @param endgameThreshold The largest number of empty squares to solve exactly, or 0 to never use the solver.
+     */
+    public void setEndgameThreshold(int endgameThreshold) {
+        this.endgameThreshold = endgameThreshold;
+    }
+
+    /**
+     * Returns how many empty squares a position may have for the endgame solver to take over.
+     *
+     * @return The largest number of empty squares that is solved exactly.
+     */
+    public int getEndgameThreshold() {
+        return endgameThreshold;
+    }
+
+    /**
+     * Sets the deepest iteration to search, on top of the time and node budgets.
+     *
+     * @param depthLimit The largest depth in plies, or 0 for no depth limit.
+     */
+    public void setDepthLimit(int depthLimit) {
+        this.depthLimit = depthLimit;
+    }
+
+    /**
+     * Sets whether a position with only one legal move is still searched to give it a score.
+     * By default the move is returned straight away with a score of 0, which is all a game needs.
+     *
+     * @param scoreForcedMoves True to search positions with one legal move as well.
+     */
+    public void setScoreForcedMoves(boolean scoreForcedMoves) {
+        this.scoreForcedMoves = scoreForcedMoves;
+    }
+
+    /**
+     * Searches for the best move for a player.
+     * Positions in the opening book are answered from the book without searching (depth 0).
+     * Positions within the endgame threshold are solved exactly with up to half the budget; the result
+     * is then marked exact and its score is the final disc difference. If the solver runs out of budget,
+     * the rest of the budget goes to the usual search.
+     *
+     * @param position The position to search. It is copied, so the caller's board is never modified.
+     * @param colour The colour of the player to move.
+     * @param timeLimitMillis The time budget in milliseconds, or 0 for no time limit.
+     * @param nodeLimit The node budget, or 0 for no node limit.
+     * @return The best move found along with the depth reached and nodes searched.
+     */
+    public SearchResult search(Board position, Tile colour, long timeLimitMillis, long nodeLimit) {
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        long deadline = timeLimitMillis > 0 ? start + timeLimitMillis : Long.MAX_VALUE;
+
+        if (openingBook != null) {
+            Point move = openingBook.lookup(position, colour);
+            long moves = VaildMoves.getLegalMoves(position.getDiscs(colour), position.getDiscs(VaildMoves.opposite(colour)));
+            if (move != null && (moves & (1L << move.getIndex())) != 0) {
+                EngineMetrics.record("book", System.nanoTime() - startNanos, 0, 0, 0, 0, 1, Long.bitCount(moves));
+                return new SearchResult(move, openingBook.score(position, colour), 0, 0, System.currentTimeMillis() - start);
+            }
+        }
+        long searchNodeLimit = nodeLimit;
+        if (position.getNumberOfEmptySquares() <= endgameThreshold) {
+            if (solver == null) {
+                solver = new EndgameSolver();
+            }
+
+            // The solver gets half the budget, so that if it cannot finish, the search still has time for a real move
+            SearchResult solved = solver.solve(position, colour, (timeLimitMillis + 1) / 2, (nodeLimit + 1) / 2);
+            if (solved.isExact() || solved.getBestMove() == null) {
+                return solved;
+            }
+            if (nodeLimit > 0) {
+                searchNodeLimit = Math.max(1, nodeLimit - solved.getNodes());
+            }
+        }
+
+        table.newSearch();
+        clearStop();
+        long probes = table.getProbes();
+        long hits = table.getHits();
+        SearchResult result = search(position, colour, deadline, searchNodeLimit, 1, 0);
+        EngineMetrics.record("search", System.nanoTime() - startNanos, result.getDepth(), result.getNodes(),
+            table.getProbes() - probes, table.getHits() - hits, moveGenerations, movesGenerated);
+        return result;
+    }
+
+    /**
+     * Searches for the best move for a player as one worker of a parallel search.
+     * Unlike the public search, this does not age the transposition table or clear a pending stop request.
+     *
+     * @param position The position to search. It is copied, so the caller's board is never modified.
+     * @param colour The colour of the player to move.
+     * @param deadline The time in epoch milliseconds to stop at, or Long.MAX_VALUE for no time limit.
+     * @param nodeLimit The node budget, or 0 for no node limit.
+     * @param firstDepth The depth of the first iteration.
+     * @param rootRotation Which root move to try first in the first iteration, counting from the usual first move.
+     * @return The best move found along with the depth reached and nodes searched.
+     */
+    SearchResult search(Board position, Tile colour, long deadline, long nodeLimit, int firstDepth, int rootRotation) {
+        long start = System.currentTimeMillis();
+        this.board = new Board(position);
+        this.deadline = deadline;
+        this.nodeLimit = nodeLimit > 0 ? nodeLimit : Long.MAX_VALUE;
+        this.nodes = 0;
+        this.stopped = false;
+        this.moveGenerations = 1;
+        orderer.newSearch();
+
+        long moves = VaildMoves.getLegalMoves(board.getDiscs(colour), board.getDiscs(VaildMoves.opposite(colour)));
+        this.movesGenerated = Long.bitCount(moves);
+        if (moves == 0) {
+            return new SearchResult(null, 0, 0, 0, System.currentTimeMillis() - start);
+        }
+
+        // With one legal move there is nothing to decide
+        int bestSquare = nextMove(moves);
+        if (Long.bitCount(moves) == 1 && !scoreForcedMoves) {
+            return new SearchResult(Point.ofIndex(bestSquare), 0, 0, 0, System.currentTimeMillis() - start);
+        }
+
+        if (rootRotation > 0) {
+            bestSquare = nthMove(moves, rootRotation % Long.bitCount(moves));
+        }
+
+        int bestScore = 0;
+        int depthReached = 0;
+        int maxDepth = board.getNumberOfEmptySquares();
+        if (depthLimit > 0) {
+            maxDepth = Math.min(maxDepth, depthLimit);
+        }
+
+        for (int depth = Math.min(firstDepth, maxDepth); depth <= maxDepth; depth++) {
+            int alpha = -INFINITY;
+            int iterationBest = -1;
+            long remaining = moves;
+
+            // Try the best move of the previous iteration first, then the rest in order
+            int square = bestSquare;
+            while (true) {
+                remaining &= ~(1L << square);
+
+                board.makeMove(square, colour);
+                int score = -negamax(VaildMoves.opposite(colour), depth - 1, -INFINITY, -alpha, false, 1);
+                board.unmakeMove();
+
+                if (stopped) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = square;
+                }
+
+                if (remaining == 0) {
+                    break;
+                }
+                square = nextMove(remaining);
+            }
+
+            // Results of an interrupted iteration are incomplete, so only finished depths count
+            if (stopped) {
+                break;
+            }
+            bestSquare = iterationBest;
+            bestScore = alpha;
+            depthReached = depth;
+
+            if (Math.abs(bestScore) >= WIN_SCORE - Board.SIZE * Board.SIZE && depth >= board.getNumberOfEmptySquares()) {
+                break;
+            }
+        }
+
+        return new SearchResult(Point.ofIndex(bestSquare), bestScore, depthReached, nodes, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Searches a position to a fixed depth and returns its score for the player to move.
+     *
+     * @param colour The colour of the player to move.
+     * @param depth The remaining depth in plies.
+     * @param alpha The lower bound of the search window.
+     * @param beta The upper bound of the search window.
+     * @param passed True if the previous player had to pass.
+     * @param ply The distance from the root of the search.
+     * @return The score of the position from the point of view of the player to move.
+     */
+    private int negamax(Tile colour, int depth, int alpha, int beta, boolean passed, int ply) {
+        nodes++;
+        if (nodes % CLOCK_CHECK_INTERVAL == 0) {
+            checkBudget();
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        long player = board.getDiscs(colour);
+        long opponent = board.getDiscs(VaildMoves.opposite(colour));
+
+        if (depth == 0) {
+            // A full board is a finished game, not a position to guess about
+            if ((player | opponent) == -1L) {
+                return finalScore(player, opponent);
+            }
+            return evaluator.evaluate(player, opponent);
+        }
+
+        long moves = VaildMoves.getLegalMoves(player, opponent);
+        moveGenerations++;
+        movesGenerated += Long.bitCount(moves);
+        if (moves == 0) {
+            // The game is over when neither player can move
+            if (passed) {
+                return finalScore(player, opponent);
+            }
+            return -negamax(VaildMoves.opposite(colour), depth, -beta, -alpha, true, ply + 1);
+        }
+
+        long key = board.getHash(colour);
+        long entry = table.probe(key);
+        int tableMove = TranspositionTable.NO_MOVE;
+        if (entry != TranspositionTable.MISS) {
+            tableMove = TranspositionTable.move(entry);
+
+            if (TranspositionTable.depth(entry) >= depth) {
+                int stored = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT) {
+                    return stored;
+                }
+                else if (bound == TranspositionTable.BOUND_LOWER) {
+                    alpha = Math.max(alpha, stored);
+                }
+                else {
+                    beta = Math.min(beta, stored);
+                }
+                if (alpha >= beta) {
+                    return stored;
+                }
+            }
+        }
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestSquare = TranspositionTable.NO_MOVE;
+        int count = orderer.order(ply, player, opponent, moves, tableMove, depth);
+        int[] squares = orderer.getMoves(ply);
+        for (int i = 0; i < count; i++) {
+            int square = squares[i];
+
+            board.makeMove(square, colour);
+            int score = -negamax(VaildMoves.opposite(colour), depth - 1, -beta, -alpha, false, ply + 1);
+            board.unmakeMove();
+
+            if (score > best) {
+                best = score;
+                bestSquare = square;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        orderer.recordCutoff(ply, square, depth, i);
+                        break;
+                    }
+                }
+            }
+        }
+
+        // An interrupted search returns made-up scores, which must not reach the table
+        if (!stopped) {
+            int bound = best <= originalAlpha ? TranspositionTable.BOUND_UPPER
+                : best >= beta ? TranspositionTable.BOUND_LOWER : TranspositionTable.BOUND_EXACT;
+            table.store(key, depth, best, bound, bestSquare);
+        }
+        return best;
+    }
+
+    /**
+     * Picks the next move to try: corners first, X and C squares last.
+     *
+     * @param moves The bitboard of moves that have not been tried yet.
+     * @return The square index of the next move.
+     */
+    private static int nextMove(long moves) {
+        if ((moves & CORNERS) != 0) {
+            return Long.numberOfTrailingZeros(moves & CORNERS);
+        }
+        if ((moves & ~X_AND_C_SQUARES) != 0) {
+            return Long.numberOfTrailingZeros(moves & ~X_AND_C_SQUARES);
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+
+    /**
+     * Returns the n-th move in the order nextMove would try them.
+     *
+     * @param moves The bitboard of moves.
+     * @param n How many moves to skip.
+     * @return The square index of the move.
+     */
+    private static int nthMove(long moves, int n) {
+        for (int i = 0; i < n; i++) {
+            moves &= ~(1L << nextMove(moves));
+        }
+        return nextMove(moves);
+    }
+
+    /**
+     * Returns how many times the last search generated moves, counting its root.
+     *
+     * @return The number of move generations.
+     */
+    long getMoveGenerations() {
+        return moveGenerations;
+    }
+
+    /**
+     * Returns how many legal moves the last search's move generations found in all.
+     *
+     * @return The total number of legal moves.
+     */
+    long getMovesGenerated() {
+        return movesGenerated;
+    }
+
+    /**
+     * Stops the search once the time or node budget is spent, or another thread asked it to stop.
+     */
+    private void checkBudget() {
+        if (stopRequested || nodes >= nodeLimit || System.currentTimeMillis() >= deadline) {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Asks a running search to stop. It returns the result of the deepest iteration it finished.
+     * This is safe to call from any thread.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Withdraws an earlier stop request so the engine can search again.
+     */
+    void clearStop() {
+        stopRequested = false;
+    }
+
+    /**
+     * Scores a position by square weights and mobility. This is the evaluation used unless another one is set.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @return The score of the position from the point of view of the player to move.
+     */
+    private static int evaluate(long player, long opponent) {
+        int score = squareWeights(player) - squareWeights(opponent);
+        int mobility = Long.bitCount(VaildMoves.getLegalMoves(player, opponent)) - Long.bitCount(VaildMoves.getLegalMoves(opponent, player));
+        return score + MOBILITY_WEIGHT * mobility;
+    }
+
+    /**
+     * Adds up the square weights of a set of discs.
+     *
+     * @param discs The discs to weigh.
+     * @return The sum of the weights of every square in the bitboard.
+     */
+    private static int squareWeights(long discs) {
+        int sum = 0;
+        while (discs != 0) {
+            sum += SQUARE_WEIGHTS[Long.numberOfTrailingZeros(discs)];
+            discs &= discs - 1;
+        }
+        return sum;
+    }
+
+    /**
+     * Scores a finished game. Any win outranks every heuristic score, and bigger wins score higher.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @return The score of the finished game from the point of view of the player to move.
+     */
+    static int finalScore(long player, long opponent) {
+        int difference = Long.bitCount(player) - Long.bitCount(opponent);
+        if (difference > 0) {
+            return WIN_SCORE + difference;
+        }
+        else if (difference < 0) {
+            return -WIN_SCORE + difference;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Plays the move found by the alpha-beta search engine within a time or node budget.
+ */
+class SearchPlayer implements Player {
+    private final SearchEngine engine;
+    private final long timeLimitMillis;
+    private final long nodeLimit;
+
+    /**
+     * Constructor for SearchPlayer class. A node budget makes the player's moves reproducible,
+     * a time budget does not.
+     *
+     * @param timeLimitMillis The time budget per move in milliseconds, or 0 for none.
+     * @param nodeLimit The node budget per move, or 0 for none.
+     */
+    public SearchPlayer(long timeLimitMillis, long nodeLimit) {
+        this(new SearchEngine(), timeLimitMillis, nodeLimit);
+    }
+
+    /**
+     * Creates a player that searches with a given engine.
+     *
+     * @param engine The engine to search with. It should not be shared with other players.
+     * @param timeLimitMillis The time budget per move in milliseconds, or 0 for none.
+     * @param nodeLimit The node budget per move, or 0 for none.
+     */
+    public SearchPlayer(SearchEngine engine, long timeLimitMillis, long nodeLimit) {
+        this.engine = engine;
+        this.timeLimitMillis = timeLimitMillis;
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Chooses the move the engine finds.
+     *
+     * @param board The current state of the board.
+     * @param colour The colour the player is playing.
+     * @return The best move found within the budget.
+     */
+    @Override
+    public Point chooseMove(Board board, Tile colour) {
+        return engine.search(board, colour, timeLimitMillis, nodeLimit).getBestMove();
+    }
+
+    /**
+     * Returns the name of this player.
+     *
+     * @return The name of this player, including its budget.
+     */
+    @Override
+    public String getName() {
+        return (timeLimitMillis > 0 ? "search:" + timeLimitMillis : "nodes:" + nodeLimit) + (engine.getEvaluator() instanceof PatternEvaluator ? ":pattern" : "");
+    }
+}
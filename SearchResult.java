@@ -0,0 +1,116 @@
+/**
+ * Holds the outcome of a search.
+ */
+class SearchResult {
+    private final Point bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedMillis;
+    private final boolean exact;
+
+    /**
+     * Constructor for SearchResult class.
+     *
+     * @param bestMove The best move found, or null if the player has no valid moves.
+     * @param score The score of the best move from the point of view of the player to move.
+     * @param depth The deepest iteration that finished.
+     * @param nodes The number of nodes searched.
+     * @param elapsedMillis The time the search took in milliseconds.
+     */
+    public SearchResult(Point bestMove, int score, int depth, long nodes, long elapsedMillis) {
+        this(bestMove, score, depth, nodes, elapsedMillis, false);
+    }
+
+    /**
+     * Constructor for SearchResult class.
+     *
+     * @param bestMove The best move found, or null if the player has no valid moves.
+     * @param score The score of the best move from the point of view of the player to move.
+     * @param depth The deepest iteration that finished.
+     * @param nodes The number of nodes searched.
+     * @param elapsedMillis The time the search took in milliseconds.
+     * @param exact True if the position was solved to the end of the game and the score is the final disc difference.
+     */
+    public SearchResult(Point bestMove, int score, int depth, long nodes, long elapsedMillis, boolean exact) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedMillis = elapsedMillis;
+        this.exact = exact;
+    }
+
+    /**
+     * Returns the best move found.
+     *
+     * @return The best move found, or null if the player has no valid moves.
+     */
+    public Point getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Returns the score of the best move.
+     *
+     * @return The score of the best move from the point of view of the player to move.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the deepest iteration that finished.
+     *
+     * @return The depth reached in plies.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the number of nodes searched.
+     *
+     * @return The number of nodes searched.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the time the search took.
+     *
+     * @return The time the search took in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns whether the position was solved exactly.
+     *
+     * @return True if the score is the exact final disc difference with best play.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Returns the search speed.
+     *
+     * @return The number of nodes searched per second.
+     */
+    public long getNodesPerSecond() {
+        return elapsedMillis > 0 ? nodes * 1000 / elapsedMillis : nodes;
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return A string representation of this object.
+     */
+    public String toString() {
+        return String.format("move %s score %d%s depth %d nodes %d (%d ms, %d nodes/s)",
+            bestMove, score, exact ? " (exact)" : "", depth, nodes, elapsedMillis, getNodesPerSecond());
+    }
+}
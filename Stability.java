@@ -0,0 +1,201 @@
+/**
+ * Finds stable discs: discs that can never be flipped for the rest of the game.
+ *
+ * A disc on an edge can only be flipped along that edge, so edge stability is read from a table of every
+ * possible edge, worked out once by trying every sequence of moves on it. An interior disc is stable when,
+ * along each of the four lines through it, the line is full or the disc touches a stable disc of its own colour.
+ * Stability spreads inwards from the edges until nothing changes.
+ *
+ * The result is a lower bound on the true number of stable discs, found with shifts and masks only,
+ * so it is cheap enough for every node of a search.
+ */
+class Stability {
+    // EDGE_STABLE[player * 256 + opponent] holds the player's discs that no sequence of moves on the edge can flip
+    private static final byte[] EDGE_STABLE = new byte[256 * 256];
+
+    private static final long TOP_EDGE = 0x00000000000000FFL;
+    private static final long INTERIOR = 0x007E7E7E7E7E7E00L;
+
+    // Lines of squares running from top right to bottom left, and from top left to bottom right
+    private static final long[] DIAGONALS = new long[15];
+    private static final long[] ANTI_DIAGONALS = new long[15];
+
+    static {
+        for (int player = 0; player < 256; player++) {
+            for (int opponent = 0; opponent < 256; opponent++) {
+                if ((player & opponent) == 0) {
+                    EDGE_STABLE[player * 256 + opponent] = (byte) findEdgeStable(player, opponent, player);
+                }
+            }
+        }
+
+        for (int square = 0; square < 64; square++) {
+            int x = square % Board.SIZE;
+            int y = square / Board.SIZE;
+            DIAGONALS[x + y] |= 1L << square;
+            ANTI_DIAGONALS[x - y + Board.SIZE - 1] |= 1L << square;
+        }
+    }
+
+    /**
+     * Works out which of the player's discs on an edge survive every sequence of moves on that edge.
+     * Either player may move to any empty square, since a move can be legal because of discs off the edge.
+     *
+     * @param player The player's discs on the edge, one bit per square.
+     * @param opponent The opponent's discs on the edge.
+     * @param stable The discs still thought to be stable.
+     * @return The discs that stay the player's whatever is played.
+     */
+    private static int findEdgeStable(int player, int opponent, int stable) {
+        stable &= player;
+        int empty = ~(player | opponent) & 0xFF;
+        if (stable == 0 || empty == 0) {
+            return stable;
+        }
+
+        for (int x = 0; x < Board.SIZE; x++) {
+            int bit = 1 << x;
+            if ((empty & bit) != 0) {
+                // The player moves here, flipping along the edge
+                int flips = edgeFlips(x, player, opponent);
+                stable = findEdgeStable(player | bit | flips, opponent & ~flips, stable);
+                if (stable == 0) {
+                    return 0;
+                }
+
+                // The opponent moves here
+                flips = edgeFlips(x, opponent, player);
+                stable = findEdgeStable(player & ~flips, opponent | bit | flips, stable);
+                if (stable == 0) {
+                    return 0;
+                }
+            }
+        }
+        return stable;
+    }
+
+    /**
+     * Returns the discs flipped along an edge by a move.
+     *
+     * @param x The square of the move on the edge.
+     * @param mover The discs of the player moving.
+     * @param other The discs of the other player.
+     * @return The other player's discs that the move flips.
+     */
+    private static int edgeFlips(int x, int mover, int other) {
+        int flips = 0;
+
+        int run = 0;
+        int y = x - 1;
+        while (y >= 0 && (other & (1 << y)) != 0) {
+            run |= 1 << y;
+            y--;
+        }
+        if (y >= 0 && (mover & (1 << y)) != 0) {
+            flips |= run;
+        }
+
+        run = 0;
+        y = x + 1;
+        while (y < Board.SIZE && (other & (1 << y)) != 0) {
+            run |= 1 << y;
+            y++;
+        }
+        if (y < Board.SIZE && (mover & (1 << y)) != 0) {
+            flips |= run;
+        }
+        return flips;
+    }
+
+    /**
+     * Returns the player's discs on the four edges that can never be flipped.
+     *
+     * @param player The discs of the player.
+     * @param opponent The discs of the opponent.
+     * @return A bitboard of the stable discs on the edges.
+     */
+    static long edgeStableDiscs(long player, long opponent) {
+        long stable = edgeRow(player, opponent, 0) | (edgeRow(player, opponent, 56) << 56);
+
+        // The left and right columns are the top and bottom rows of the board mirrored along its diagonal
+        long p = Symmetry.flipDiagonal(player);
+        long o = Symmetry.flipDiagonal(opponent);
+        return stable | Symmetry.flipDiagonal(edgeRow(p, o, 0) | (edgeRow(p, o, 56) << 56));
+    }
+
+    /**
+     * Looks up the stable discs of one row.
+     *
+     * @param player The discs of the player.
+     * @param opponent The discs of the opponent.
+     * @param shift The index of the row's first square.
+     * @return The stable discs in the low eight bits.
+     */
+    private static long edgeRow(long player, long opponent, int shift) {
+        int index = (int) ((player >>> shift) & TOP_EDGE) * 256 + (int) ((opponent >>> shift) & TOP_EDGE);
+        return EDGE_STABLE[index] & TOP_EDGE;
+    }
+
+    /**
+     * Returns the player's discs that can never be flipped.
+     *
+     * @param player The discs of the player.
+     * @param opponent The discs of the opponent.
+     * @return A bitboard of stable discs. It may miss some stable discs, but never includes a disc that can be flipped.
+     */
+    static long stableDiscs(long player, long opponent) {
+        long occupied = player | opponent;
+
+        // Squares whose row, column or diagonal is completely full
+        long rows = 0;
+        for (int row = 0; row < 64; row += Board.SIZE) {
+            if (((occupied >>> row) & TOP_EDGE) == TOP_EDGE) {
+                rows |= TOP_EDGE << row;
+            }
+        }
+        long columns = occupied & (occupied >>> 32);
+        columns &= columns >>> 16;
+        columns &= columns >>> 8;
+        columns = (columns & TOP_EDGE) * 0x0101010101010101L;
+        long diagonals = 0;
+        long antiDiagonals = 0;
+        for (int line = 0; line < DIAGONALS.length; line++) {
+            if ((occupied & DIAGONALS[line]) == DIAGONALS[line]) {
+                diagonals |= DIAGONALS[line];
+            }
+            if ((occupied & ANTI_DIAGONALS[line]) == ANTI_DIAGONALS[line]) {
+                antiDiagonals |= ANTI_DIAGONALS[line];
+            }
+        }
+
+        long interior = player & INTERIOR;
+        long stable = edgeStableDiscs(player, opponent) | (interior & rows & columns & diagonals & antiDiagonals);
+        if (stable == 0) {
+            return 0;
+        }
+
+        // Interior squares have all eight neighbours on the board, so the shifts cannot wrap around
+        long previous;
+        do {
+            previous = stable;
+            long horizontal = (stable >>> 1) | (stable << 1) | rows;
+            long vertical = (stable >>> 8) | (stable << 8) | columns;
+            long diagonal = (stable >>> 7) | (stable << 7) | diagonals;
+            long antiDiagonal = (stable >>> 9) | (stable << 9) | antiDiagonals;
+            stable |= horizontal & vertical & diagonal & antiDiagonal & interior;
+        } while (stable != previous);
+
+        return stable;
+    }
+
+    /**
+     * Counts the player's discs that can never be flipped.
+     *
+     * @param player The discs of the player.
+     * @param opponent The discs of the opponent.
+     * @return The number of stable discs.
+     */
+    static int countStable(long player, long opponent) {
+        return Long.bitCount(stableDiscs(player, opponent));
+    }
+}
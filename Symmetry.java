@@ -0,0 +1,170 @@
+/**
+ * The 8 symmetries of the board (rotations and reflections), applied to bitboards.
+ *
+ * Each transform is a handful of shifts and masks on a long. Transforms are numbered 0 to 7:
+ * identity, rotate 90, rotate 180, rotate 270 (all clockwise), flip horizontal (mirror the columns),
+ * flip vertical (mirror the rows), flip along the a1-h8 diagonal and flip along the h1-a8 diagonal.
+ */
+final class Symmetry {
+    static final int IDENTITY = 0;
+    static final int ROTATE_90 = 1;
+    static final int ROTATE_180 = 2;
+    static final int ROTATE_270 = 3;
+    static final int FLIP_HORIZONTAL = 4;
+    static final int FLIP_VERTICAL = 5;
+    static final int FLIP_DIAGONAL = 6;
+    static final int FLIP_ANTI_DIAGONAL = 7;
+
+    static final int COUNT = 8;
+
+    // Where each square goes under each transform, and which transform undoes each transform
+    private static final int[][] SQUARE_MAP = new int[COUNT][64];
+    private static final int[] INVERSE = new int[COUNT];
+
+    static {
+        for (int transform = 0; transform < COUNT; transform++) {
+            for (int square = 0; square < 64; square++) {
+                SQUARE_MAP[transform][square] = Long.numberOfTrailingZeros(transform(1L << square, transform));
+            }
+        }
+        for (int transform = 0; transform < COUNT; transform++) {
+            for (int candidate = 0; candidate < COUNT; candidate++) {
+                if (transform(transform(0x0000000000010203L, transform), candidate) == 0x0000000000010203L) {
+                    INVERSE[transform] = candidate;
+                }
+            }
+        }
+    }
+
+    private Symmetry() {
+    }
+
+    /**
+     * Applies a symmetry to a bitboard.
+     *
+     * @param discs The bitboard to transform.
+     * @param transform The number of the transform (0 to 7).
+     * @return The transformed bitboard.
+     */
+    static long transform(long discs, int transform) {
+        switch (transform) {
+            case ROTATE_90:
+                return flipHorizontal(flipDiagonal(discs));
+            case ROTATE_180:
+                return Long.reverse(discs);
+            case ROTATE_270:
+                return flipVertical(flipDiagonal(discs));
+            case FLIP_HORIZONTAL:
+                return flipHorizontal(discs);
+            case FLIP_VERTICAL:
+                return flipVertical(discs);
+            case FLIP_DIAGONAL:
+                return flipDiagonal(discs);
+            case FLIP_ANTI_DIAGONAL:
+                return Long.reverse(flipDiagonal(discs));
+            default:
+                return discs;
+        }
+    }
+
+    /**
+     * Returns where a square goes under a symmetry.
+     *
+     * @param square The square index (y * 8 + x).
+     * @param transform The number of the transform (0 to 7).
+     * @return The transformed square index.
+     */
+    static int transformSquare(int square, int transform) {
+        return SQUARE_MAP[transform][square];
+    }
+
+    /**
+     * Returns where a move goes under a symmetry.
+     *
+     * @param point The point to transform.
+     * @param transform The number of the transform (0 to 7).
+     * @return The transformed point.
+     */
+    static Point transform(Point point, int transform) {
+        return Point.ofIndex(SQUARE_MAP[transform][point.getIndex()]);
+    }
+
+    /**
+     * Returns the transform that undoes another.
+     *
+     * @param transform The number of the transform (0 to 7).
+     * @return The number of its inverse.
+     */
+    static int inverse(int transform) {
+        return INVERSE[transform];
+    }
+
+    /**
+     * Finds the symmetry that maps a position to its canonical form: the smallest (black, white) pair
+     * of bitboards, compared as unsigned numbers, over all 8 symmetries.
+     *
+     * @param blackDiscs The bitboard of black discs.
+     * @param whiteDiscs The bitboard of white discs.
+     * @return The number of the transform that gives the canonical form.
+     */
+    static int canonicalTransform(long blackDiscs, long whiteDiscs) {
+        int best = IDENTITY;
+        long bestBlack = blackDiscs;
+        long bestWhite = whiteDiscs;
+
+        for (int transform = 1; transform < COUNT; transform++) {
+            long black = transform(blackDiscs, transform);
+            int order = Long.compareUnsigned(black, bestBlack);
+            if (order > 0) {
+                continue;
+            }
+
+            long white = transform(whiteDiscs, transform);
+            if (order < 0 || Long.compareUnsigned(white, bestWhite) < 0) {
+                best = transform;
+                bestBlack = black;
+                bestWhite = white;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Mirrors the rows of a bitboard (row 0 becomes row 7).
+     *
+     * @param discs The bitboard to flip.
+     * @return The flipped bitboard.
+     */
+    static long flipVertical(long discs) {
+        return Long.reverseBytes(discs);
+    }
+
+    /**
+     * Mirrors the columns of a bitboard (column A becomes column H).
+     *
+     * @param discs The bitboard to flip.
+     * @return The flipped bitboard.
+     */
+    static long flipHorizontal(long discs) {
+        discs = ((discs >>> 1) & 0x5555555555555555L) | ((discs & 0x5555555555555555L) << 1);
+        discs = ((discs >>> 2) & 0x3333333333333333L) | ((discs & 0x3333333333333333L) << 2);
+        discs = ((discs >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((discs & 0x0F0F0F0F0F0F0F0FL) << 4);
+        return discs;
+    }
+
+    /**
+     * Mirrors a bitboard along the a1-h8 diagonal, swapping x and y.
+     *
+     * @param discs The bitboard to flip.
+     * @return The flipped bitboard.
+     */
+    static long flipDiagonal(long discs) {
+        long swap = 0x0F0F0F0F00000000L & (discs ^ (discs << 28));
+        discs ^= swap ^ (swap >>> 28);
+        swap = 0x3333000033330000L & (discs ^ (discs << 14));
+        discs ^= swap ^ (swap >>> 14);
+        swap = 0x5500550055005500L & (discs ^ (discs << 7));
+        discs ^= swap ^ (swap >>> 7);
+        return discs;
+    }
+}
@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays two players against each other without the console, several games at a time.
+ *
+ * Each random opening is played twice with the colours swapped, so neither player gets the
+ * better side of an opening more often. Every game builds its own board and players, so
+ * nothing is shared between the worker threads except the statistics and the game archive.
+ *
+ * Usage: java Tournament [player A] [player B] [openings] [threads] [seed] [archive file]
+ * where the players are described as in {@link Player#fromDescription(String, long)}.
+ */
+class Tournament {
+    private static final int OPENING_PLIES = 6;
+
+    private final String descriptionA;
+    private final String descriptionB;
+    private final LongAdder movesA = new LongAdder();
+    private final LongAdder movesB = new LongAdder();
+    private final LongAdder nanosA = new LongAdder();
+    private final LongAdder nanosB = new LongAdder();
+    private GameArchive archive;
+
+    /**
+     * Constructor for Tournament class.
+     *
+     * @param descriptionA The description of the first player.
+     * @param descriptionB The description of the second player.
+     */
+    public Tournament(String descriptionA, String descriptionB) {
+        this.descriptionA = descriptionA;
+        this.descriptionB = descriptionB;
+    }
+
+    /**
+     * Sets the archive to save every finished game to.
+     *
+     * @param archive The archive, or null to not save games.
+     */
+    public void setArchive(GameArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Builds distinct openings by playing random moves from the start position.
+     * The seed is fixed, so the openings are the same on every run.
+     *
+     * @param count How many openings to build.
+     * @param seed The seed of the random moves.
+     * @return The openings, as games that have played the opening moves. Black is always to move.
+     */
+    static List<GameState> openings(int count, long seed) {
+        Random random = new Random(seed);
+        List<GameState> openings = new ArrayList<GameState>();
+        Set<Long> seen = new HashSet<Long>();
+
+        // There are thousands of different six move openings, so this always finishes
+        while (openings.size() < count) {
+            GameState opening = new GameState();
+            for (int ply = 0; ply < OPENING_PLIES; ply++) {
+                long moves = opening.getLegalMoves();
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                opening.play(Point.ofIndex(Long.numberOfTrailingZeros(moves)));
+            }
+            if (seen.add(opening.getBoard().getHash())) {
+                openings.add(opening);
+            }
+        }
+        return openings;
+    }
+
+    /**
+     * Plays one game from an opening to the end.
+     *
+     * @param opening The opening to start from. It is not modified.
+     * @param aIsBlack Whether player A plays black.
+     * @param seed The seed for players that make random choices.
+     * @return The final disc difference from player A's point of view.
+     * @throws IOException if the game cannot be saved to the archive
+     */
+    int playGame(GameState opening, boolean aIsBlack, long seed) throws IOException {
+        GameState game = new GameState(opening);
+        try (Player a = Player.fromDescription(descriptionA, seed); Player b = Player.fromDescription(descriptionB, seed + 1)) {
+            while (!game.isGameOver()) {
+                Tile colour = game.getCurrentPlayer();
+                boolean aToMove = (colour == Tile.BLACK) == aIsBlack;
+                long start = System.nanoTime();
+                Point move = (aToMove ? a : b).chooseMove(game.getBoard(), colour);
+                long elapsed = System.nanoTime() - start;
+                (aToMove ? nanosA : nanosB).add(elapsed);
+                (aToMove ? movesA : movesB).increment();
+                game.play(move);
+            }
+
+            if (archive != null) {
+                archive.append(aIsBlack ? game.toRecord(a.getName(), b.getName()) : game.toRecord(b.getName(), a.getName()));
+            }
+        }
+
+        int difference = game.getDiscDifference();
+        return aIsBlack ? difference : -difference;
+    }
+
+    /**
+     * Plays every opening twice, once from each side, on a pool of worker threads.
+     *
+     * @param openings The openings to play.
+     * @param threads How many games to play at once.
+     * @param seed The seed for players that make random choices.
+     * @return The disc differences from player A's point of view, two per opening.
+     * @throws InterruptedException if interrupted while waiting for the games
+     * @throws ExecutionException if a game fails
+     */
+    List<Integer> play(List<GameState> openings, int threads, long seed) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> games = new ArrayList<Future<Integer>>();
+        try {
+            for (int i = 0; i < openings.size(); i++) {
+                GameState opening = openings.get(i);
+                long gameSeed = seed + 4L * i;
+                games.add(pool.submit(() -> playGame(opening, true, gameSeed)));
+                games.add(pool.submit(() -> playGame(opening, false, gameSeed + 2)));
+            }
+
+            List<Integer> results = new ArrayList<Integer>();
+            for (Future<Integer> game : games) {
+                results.add(game.get());
+            }
+            return results;
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Converts an expected score into an Elo difference.
+     *
+     * @param score The expected score, between 0 and 1.
+     * @return The Elo difference that gives that score.
+     */
+    static double elo(double score) {
+        // Keep a clean sweep finite
+        double clamped = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400 * Math.log10(1 / clamped - 1);
+    }
+
+    /**
+     * Returns the average time player A or player B took per move.
+     *
+     * @param playerA Whether to return player A's latency rather than player B's.
+     * @return The average time per move in milliseconds.
+     */
+    double getAverageMoveMillis(boolean playerA) {
+        long moves = (playerA ? movesA : movesB).sum();
+        return moves == 0 ? 0 : (playerA ? nanosA : nanosB).sum() / 1e6 / moves;
+    }
+
+    /**
+     * Runs a tournament and prints the results.
+     *
+     * @param args Player A, player B, the number of openings, the number of threads, the seed and the archive file.
+     * @throws InterruptedException if interrupted while waiting for the games
+     * @throws ExecutionException if a game fails
+     * @throws IOException if the archive cannot be opened
+     */
+    public static void main(String[] args) throws InterruptedException, ExecutionException, IOException {
+        String playerA = args.length > 0 ? args[0] : "nodes:20000";
+        String playerB = args.length > 1 ? args[1] : "easy";
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        EngineMetrics.enableIfRequested();
+
+        Tournament tournament = new Tournament(playerA, playerB);
+        List<GameState> openings = openings(count, seed);
+        System.out.printf("%s vs %s: %d openings, %d games, %d threads%n", playerA, playerB, count, 2 * count, threads);
+
+        long start = System.nanoTime();
+        List<Integer> results;
+        if (args.length > 5) {
+            try (GameArchive archive = new GameArchive(Path.of(args[5]))) {
+                tournament.setArchive(archive);
+                results = tournament.play(openings, threads, seed);
+            }
+        }
+        else {
+            results = tournament.play(openings, threads, seed);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int wins = 0;
+        int draws = 0;
+        int losses = 0;
+        double squares = 0;
+        for (int result : results) {
+            if (result > 0) {
+                wins++;
+                squares += 1;
+            }
+            else if (result == 0) {
+                draws++;
+                squares += 0.25;
+            }
+            else {
+                losses++;
+            }
+        }
+
+        // 95% confidence interval from the spread of the per-game scores
+        int games = results.size();
+        double score = (wins + draws / 2.0) / games;
+        double deviation = Math.sqrt(Math.max(squares / games - score * score, 0) / games);
+        double low = elo(score - 1.96 * deviation);
+        double high = elo(score + 1.96 * deviation);
+
+        System.out.printf("W/D/L: %d/%d/%d  score %.1f%%%n", wins, draws, losses, 100 * score);
+        System.out.printf("Elo: %+.0f (95%%: %+.0f to %+.0f, +/- %.0f)%n", elo(score), low, high, (high - low) / 2);
+        System.out.printf("%.2f games/s  avg move: %s %.3f ms, %s %.3f ms%n", games / seconds,
+                playerA, tournament.getAverageMoveMillis(true), playerB, tournament.getAverageMoveMillis(false));
+        if (EngineMetrics.isEnabled()) {
+            System.out.println(EngineMetrics.get());
+        }
+    }
+}
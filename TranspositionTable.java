@@ -0,0 +1,276 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size hash table of search results, keyed by Zobrist hash.
+ *
+ * Entries live in two parallel long arrays (key and packed data), grouped in buckets of four.
+ * When a bucket is full, the entry that is shallowest and from the oldest search is replaced,
+ * so deep results survive until they go stale.
+ *
+ * The table is safe to share between search threads without locks. Each key is stored XORed with its data,
+ * so an entry torn by two threads writing at once fails the key check on probe and reads as a miss.
+ *
+ * The packed data holds the score in the low 32 bits, followed by the best move (7 bits),
+ * the depth (7 bits), the bound type (2 bits) and the age of the search that stored it (8 bits).
+ */
+class TranspositionTable {
+    static final int BOUND_LOWER = 1;
+    static final int BOUND_UPPER = 2;
+    static final int BOUND_EXACT = 3;
+
+    // Returned by probe when the position is not in the table; no stored entry is ever 0
+    static final long MISS = 0L;
+
+    static final int NO_MOVE = 64;
+
+    private static final int BUCKET_SIZE = 4;
+    private static final int BYTES_PER_ENTRY = 16;
+
+    private static final int MOVE_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 39;
+    private static final int BOUND_SHIFT = 46;
+    private static final int AGE_SHIFT = 48;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private volatile int age;
+
+    // Striped counters, so threads sharing the table do not fight over one cache line
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * Constructor for TranspositionTable class.
+     *
+     * @param sizeInMegabytes The memory to use. The entry count is rounded down to a power of two.
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    public TranspositionTable(int sizeInMegabytes) {
+        if (sizeInMegabytes <= 0) {
+            throw new IllegalArgumentException("Table size must be at least 1 MB");
+        }
+        long entries = Long.highestOneBit((long) sizeInMegabytes * 1024 * 1024 / BYTES_PER_ENTRY);
+        entries = Math.min(entries, 1 << 30);
+
+        keys = new long[(int) entries];
+        data = new long[(int) entries];
+        bucketMask = (int) (entries / BUCKET_SIZE) - 1;
+    }
+
+    /**
+     * Looks a position up in the table.
+     *
+     * @param key The Zobrist hash of the position, including the player to move.
+     * @return The packed entry data, or MISS if the position is not stored.
+     */
+    public long probe(long key) {
+        probes.increment();
+        int first = bucketOf(key);
+        for (int i = first; i < first + BUCKET_SIZE; i++) {
+            long entry = data[i];
+            if (entry != MISS && (keys[i] ^ entry) == key) {
+                hits.increment();
+                return entry;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores the result of searching a position.
+     *
+     * @param key The Zobrist hash of the position, including the player to move.
+     * @param depth The depth the position was searched to.
+     * @param score The score found.
+     * @param bound Whether the score is exact or a lower or upper bound.
+     * @param move The best move found, or NO_MOVE.
+     */
+    public void store(long key, int depth, int score, int bound, int move) {
+        stores.increment();
+        int currentAge = age;
+        int first = bucketOf(key);
+        int victim = first;
+        int victimValue = Integer.MAX_VALUE;
+        boolean samePosition = false;
+
+        for (int i = first; i < first + BUCKET_SIZE; i++) {
+            long entry = data[i];
+            if (entry == MISS || (keys[i] ^ entry) == key) {
+                victim = i;
+                samePosition = entry != MISS;
+                break;
+            }
+
+            // Entries from the current search are worth more than any stale entry, then deeper beats shallower
+            int value = depth(entry) + (age(entry) == currentAge ? 128 : 0);
+            if (value < victimValue) {
+                victim = i;
+                victimValue = value;
+            }
+        }
+
+        if (!samePosition && data[victim] != MISS) {
+            collisions.increment();
+        }
+        long entry = pack(depth, score, bound, move, currentAge);
+        keys[victim] = key ^ entry;
+        data[victim] = entry;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches are replaced first.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * Removes every entry and resets the statistics.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, MISS);
+        age = 0;
+        probes.reset();
+        hits.reset();
+        stores.reset();
+        collisions.reset();
+    }
+
+    /**
+     * Returns the index of the first entry of a key's bucket.
+     *
+     * @param key The Zobrist hash of a position.
+     * @return The index of the first entry in the bucket.
+     */
+    private int bucketOf(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE;
+    }
+
+    /**
+     * Packs an entry into a long.
+     *
+     * @param depth The depth the position was searched to.
+     * @param score The score found.
+     * @param bound The bound type.
+     * @param move The best move found.
+     * @param age The age of the search that stored it.
+     * @return The packed entry.
+     */
+    private static long pack(int depth, int score, int bound, int move, int age) {
+        return (score & 0xFFFFFFFFL)
+            | ((long) move << MOVE_SHIFT)
+            | ((long) depth << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) age << AGE_SHIFT);
+    }
+
+    /**
+     * Returns the score of a packed entry.
+     *
+     * @param entry The packed entry.
+     * @return The stored score.
+     */
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Returns the best move of a packed entry.
+     *
+     * @param entry The packed entry.
+     * @return The stored square index, or NO_MOVE.
+     */
+    static int move(long entry) {
+        return (int) (entry >>> MOVE_SHIFT) & 0x7F;
+    }
+
+    /**
+     * Returns the depth of a packed entry.
+     *
+     * @param entry The packed entry.
+     * @return The stored depth.
+     */
+    static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & 0x7F;
+    }
+
+    /**
+     * Returns the bound type of a packed entry.
+     *
+     * @param entry The packed entry.
+     * @return BOUND_LOWER, BOUND_UPPER or BOUND_EXACT.
+     */
+    static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * Returns the age of a packed entry.
+     *
+     * @param entry The packed entry.
+     * @return The age of the search that stored it.
+     */
+    private static int age(long entry) {
+        return (int) (entry >>> AGE_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Returns the number of entries the table can hold.
+     *
+     * @return The capacity of the table.
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the number of lookups.
+     *
+     * @return The number of lookups since the table was created or cleared.
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * Returns the number of lookups that found their position.
+     *
+     * @return The number of hits since the table was created or cleared.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of entries written.
+     *
+     * @return The number of stores since the table was created or cleared.
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Returns the number of stores that overwrote a different position.
+     *
+     * @return The number of collisions since the table was created or cleared.
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return A string representation of this object.
+     */
+    public String toString() {
+        return String.format("TT %d entries: %d probes, %d hits (%.1f%%), %d stores, %d collisions",
+            keys.length, getProbes(), getHits(), getProbes() > 0 ? 100.0 * getHits() / getProbes() : 0.0, getStores(), getCollisions());
+    }
+}
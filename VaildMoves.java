@@ -3,9 +3,36 @@ import java.util.HashMap;
 
 /**
  * Finds the valid moves given a board
+ *
+ * Moves are generated on the board's bitboards by shifting the player's discs in all 8 directions,
+ * so neither the move mask nor the flip mask needs to allocate anything.
  */
 public class VaildMoves {
-    private Board board;
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_H = 0x8080808080808080L;
+
+    // East, west, south, north, south-east, south-west, north-east, north-west
+    private static final int DIRECTIONS = 8;
+    private static final int[] SHIFTS = {1, -1, 8, -8, 9, 7, -7, -9};
+    private static final long[] SHIFT_MASKS = {~FILE_A, ~FILE_H, -1L, -1L, ~FILE_A, ~FILE_H, ~FILE_A, ~FILE_H};
+
+    // RAYS[square * DIRECTIONS + direction] holds the squares from a square to the edge of the board
+    // in one direction, not counting the square itself
+    private static final long[] RAYS = new long[64 * DIRECTIONS];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                long ray = 0L;
+                for (long cursor = shift(1L << square, direction); cursor != 0; cursor = shift(cursor, direction)) {
+                    ray |= cursor;
+                }
+                RAYS[square * DIRECTIONS + direction] = ray;
+            }
+        }
+    }
+
+    private final Board board;
 
     /**
      * Constructor for VaildMoves class.
@@ -16,15 +43,6 @@ public class VaildMoves {
         this.board = board;
     }
 
-    /**
-     * Updates the board object for this instance of VaildMoves.
-     *
-     * @param board The new board object to update this instance with.
-     */
-    public void updateBoard(Board board) {
-        this.board = board;
-    }
-
     /**
      * Returns a HashMap containing all valid moves for a given player color.
      *
@@ -33,145 +51,209 @@ public class VaildMoves {
      */
     public HashMap<Point, ArrayList<Point>> getValidPlayerMoves(Tile colour) {
         HashMap<Point, ArrayList<Point>> AllValidMoves = new HashMap<Point, ArrayList<Point>>();
+        long player = board.getDiscs(colour);
+        long opponent = board.getDiscs(opposite(colour));
 
-         // Compile and add valid moves for each piece depending on their colour.
-        if (colour == Tile.WHITE) {
-            for (Point point : board.getWhitePieces().keySet()) {
-                AllValidMoves.putAll(compileValidMoves(point, AllValidMoves));
-            }
+        // Expand each move and its flip mask into the points the callers expect.
+        long moves = getLegalMoves(player, opponent);
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            AllValidMoves.put(Point.ofIndex(square), toPoints(flipsFor(square, player, opponent)));
         }
-        else if (colour == Tile.BLACK) {
-            for (Point point : board.getBlackPieces().keySet()) {
-                AllValidMoves.putAll(compileValidMoves(point, AllValidMoves));
-            }
-        }
- 
         return AllValidMoves;
     }
 
     /**
-     * Compiles all valid moves for a given piece on the board.
+     * Returns the bitboard of all valid moves for a given player color.
      *
-     * @param point The point on the board where the piece is located.
-     * @param AllValidMoves A HashMap containing all valid moves so far.
-     * @return A HashMap containing all valid moves for a given piece on the board.
+     * @param colour The color of the player to get valid moves for.
+     * @return A bitboard with a bit set on every square the player can move to.
      */
-    private HashMap<Point, ArrayList<Point>> compileValidMoves(Point point, HashMap<Point, ArrayList<Point>> AllValidMoves) {
-        // Get all valid moves for the piece located at the given point.
-        HashMap<Point, ArrayList<Point>> validMovesForPiece = getValidMovesFrom(point);
-
+    public long getValidMoveMask(Tile colour) {
+        return getLegalMoves(board.getDiscs(colour), board.getDiscs(opposite(colour)));
+    }
 
-        for (Point validPoints : validMovesForPiece.keySet()) {
+    /**
+     * Returns the bitboard of discs that would be flipped by a move.
+     *
+     * @param move The point the player would move to.
+     * @param colour The color of the player making the move.
+     * @return A bitboard of the discs that would be flipped, or 0 if the move is not valid.
+     */
+    public long flipsFor(Point move, Tile colour) {
+        return flipsFor(move.getIndex(), board.getDiscs(colour), board.getDiscs(opposite(colour)));
+    }
 
-            // If the Map that contains ALL vaild moves (not just this point) already contains the key for the current point
-            // We will merely find the current move's key and add all the points that are affected by it
-            // Otherwise we will have to create a new key for the point and then add all the points that are affected by it
-            if (AllValidMoves.containsKey(validPoints)) {
+    /**
+     * Returns the bitboard of all legal moves for a player.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @return A bitboard with a bit set on every legal move.
+     */
+    public static long getLegalMoves(long player, long opponent) {
+        long empty = ~(player | opponent);
 
-                // Ensure that it actaully exists
-                if (AllValidMoves.get(validPoints) != null) {
-                    ArrayList<Point> holder = AllValidMoves.get(validPoints);
-                    holder.addAll(validMovesForPiece.get(validPoints));
-                    AllValidMoves.put(validPoints, holder);
-                }
-            }
-            else if (validPoints != null) {
-                AllValidMoves.put(validPoints, validMovesForPiece.get(validPoints));
-            }
-        }
-        return AllValidMoves;
+        // The directions are written out with constant shifts, which the JIT compiles to plain shift
+        // instructions. Masking the opponent's discs and the targets with the shift mask of a direction
+        // drops runs that would wrap around the edge of the board.
+        long notA = opponent & ~FILE_A;
+        long notH = opponent & ~FILE_H;
+        return movesUp(player, notA, empty & ~FILE_A, 1) | movesDown(player, notH, empty & ~FILE_H, 1)
+            | movesUp(player, opponent, empty, 8) | movesDown(player, opponent, empty, 8)
+            | movesUp(player, notA, empty & ~FILE_A, 9) | movesUp(player, notH, empty & ~FILE_H, 7)
+            | movesDown(player, notA, empty & ~FILE_A, 7) | movesDown(player, notH, empty & ~FILE_H, 9);
     }
 
     /**
-     * Returns all valid moves from a given point on the board.
+     * Finds the moves in one direction towards higher square indexes.
      *
-     * @param currentPoint The point on the board to get valid moves from.
-     * @return A HashMap containing all valid moves from a given point on the board.
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent that a run in this direction can pass through.
+     * @param targets The empty squares a run in this direction can end on.
+     * @param amount The shift of one step in this direction.
+     * @return A bitboard of the moves in this direction.
      */
-    private HashMap<Point, ArrayList<Point>> getValidMovesFrom(Point currentPoint) {
+    private static long movesUp(long player, long opponent, long targets, int amount) {
+        // Walk along runs of opponent discs that start next to one of the player's discs.
+        // A run can be at most six discs long, so six steps cover the whole board.
+        long run = (player << amount) & opponent;
+        run |= (run << amount) & opponent;
+        run |= (run << amount) & opponent;
+        run |= (run << amount) & opponent;
+        run |= (run << amount) & opponent;
+        run |= (run << amount) & opponent;
 
-         // Initialize a HashMap to store valid moves in all directions.
-        HashMap<Point, ArrayList<Point>> allDirections = new HashMap<Point, ArrayList<Point>>();
-        
-        // Iterate through 360 degrees with 45-degree increments to cover all directions.
-        for (int degree = 0; degree <= 360; degree += 45) {
+        // The square just past the end of a run is a move if it is empty
+        return (run << amount) & targets;
+    }
 
-            // Calculate the direction vector based on the degree.
-            Point direction = new Point((int)Math.round(Math.cos(Math.toRadians(degree))), (int)Math.round(Math.sin(Math.toRadians(degree))) * -1);
+    /**
+     * Finds the moves in one direction towards lower square indexes.
+     *
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent that a run in this direction can pass through.
+     * @param targets The empty squares a run in this direction can end on.
+     * @param amount The shift of one step in this direction.
+     * @return A bitboard of the moves in this direction.
+     */
+    private static long movesDown(long player, long opponent, long targets, int amount) {
+        long run = (player >>> amount) & opponent;
+        run |= (run >>> amount) & opponent;
+        run |= (run >>> amount) & opponent;
+        run |= (run >>> amount) & opponent;
+        run |= (run >>> amount) & opponent;
+        run |= (run >>> amount) & opponent;
+        return (run >>> amount) & targets;
+    }
 
-            // Find all pieces in the current direction from the given point.
-            ArrayList<Point> piecesInDirection = findPieceInDirectionOf(currentPoint, direction);
+    /**
+     * Returns the bitboard of discs flipped when a player moves to a square.
+     *
+     * @param square The square index (y * 8 + x) of the move.
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @return A bitboard of the discs that would be flipped, or 0 if the move is not legal.
+     */
+    public static long flipsFor(int square, long player, long opponent) {
+        int rays = square * DIRECTIONS;
+        return flipsUp(RAYS[rays], player, opponent) | flipsDown(RAYS[rays + 1], player, opponent)
+            | flipsUp(RAYS[rays + 2], player, opponent) | flipsDown(RAYS[rays + 3], player, opponent)
+            | flipsUp(RAYS[rays + 4], player, opponent) | flipsUp(RAYS[rays + 5], player, opponent)
+            | flipsDown(RAYS[rays + 6], player, opponent) | flipsDown(RAYS[rays + 7], player, opponent);
+    }
 
-            Point validMove = null;
-            // The valid move will be the last point in the list as that is where the player's piece will jump to
-            if (!piecesInDirection.isEmpty()) {
-                validMove = piecesInDirection.remove(piecesInDirection.size() -1);
-            }
-            allDirections.put(validMove, piecesInDirection);
-        }
-        return allDirections;
+    /**
+     * Finds the discs flipped along a ray towards higher square indexes.
+     *
+     * @param ray The squares from the move to the edge of the board in one direction.
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @return A bitboard of the discs flipped along the ray.
+     */
+    private static long flipsUp(long ray, long player, long opponent) {
+        // The nearest square on the ray that is not the opponent's ends the run; it flips the run
+        // if it is the player's. The mask is all ones in that case and zero otherwise, without a branch.
+        long end = ray & ~opponent;
+        end &= -end;
+        long closed = end & player;
+        return (end - 1) & ray & ((closed | -closed) >> 63);
     }
 
     /**
-     * Finds all pieces in a given direction from a starting point on the board.
+     * Finds the discs flipped along a ray towards lower square indexes.
      *
-     * @param currentPoint The starting point on the board to find pieces from.
-     * @param vector      The direction to look for pieces in.
-     * @return An ArrayList containing all pieces in a given direction from a starting point on the board.
+     * @param ray The squares from the move to the edge of the board in one direction.
+     * @param player The discs of the player to move.
+     * @param opponent The discs of the opponent.
+     * @return A bitboard of the discs flipped along the ray.
      */
-    private ArrayList<Point> findPieceInDirectionOf(Point currentPoint, Point vector) {
-        Piece current = board.getPiece(currentPoint);
-
-        // Determine the piece to look for based on the current piece.
-        Piece pieceFound = current.getOpposite();
-        
-           // Initialize variables for tracking movement and storing coordinates.
-        Point changeDirection = currentPoint.clone();  // Store coordinates of pieces found.
-        ArrayList<Point> pointsToPiece = new ArrayList<Point>();
-        ArrayList<Point> empty = new ArrayList<Point>(); // Empty list to return if no piece is found.
-
-        // Loop until an opposite piece is no longer found.
-        while (pieceFound.isOppositeTo(current)) {
-
-            // Move to the next coordinate in the specified direction.
-            if (board.isPointOnBoard(changeDirection.add(vector))) {
-                changeDirection = changeDirection.add(vector);
-            }
-            else {
-                // If the coordinate is off the board, return an empty list.
-                return empty;
-            }
-            
-            pointsToPiece.add(changeDirection);
-            pieceFound = board.getPiece(changeDirection);
+    private static long flipsDown(long ray, long player, long opponent) {
+        long end = Long.highestOneBit(ray & ~opponent);
+        long closed = end & player;
+        return ray & -(end << 1) & ((closed | -closed) >> 63);
+    }
+
+    /**
+     * Shifts every disc in a bitboard one step in a direction, dropping discs that leave the board.
+     *
+     * @param discs The bitboard to shift.
+     * @param direction The index of the direction in SHIFTS.
+     * @return The shifted bitboard.
+     */
+    static long shift(long discs, int direction) {
+        int amount = SHIFTS[direction];
+        long shifted = amount > 0 ? discs << amount : discs >>> -amount;
+        return shifted & SHIFT_MASKS[direction];
+    }
 
-            // If the current piece matches the starting piece, return an empty list.
-            if (pieceFound.equals(current)) return empty;
+    /**
+     * Returns the opposite player colour.
+     *
+     * @param colour The colour to get the opposite of.
+     * @return BLACK for WHITE, WHITE for BLACK and EMPTY otherwise.
+     */
+    static Tile opposite(Tile colour) {
+        if (colour == Tile.BLACK) {
+            return Tile.WHITE;
         }
-        
-        if (pieceFound.isEmpty() && pointsToPiece.size() > 1) {
-            return pointsToPiece;
+        else if (colour == Tile.WHITE) {
+            return Tile.BLACK;
         }
-        else {
-            return empty;
+        return Tile.EMPTY;
+    }
+
+    /**
+     * Converts a bitboard into a list of points.
+     *
+     * @param discs The bitboard to convert.
+     * @return A list with one point for every set bit.
+     */
+    private static ArrayList<Point> toPoints(long discs) {
+        ArrayList<Point> points = new ArrayList<Point>(Long.bitCount(discs));
+        while (discs != 0) {
+            points.add(Point.ofIndex(Long.numberOfTrailingZeros(discs)));
+            discs &= discs - 1;
         }
+        return points;
     }
 
     public static void main(String[] args) {
         Board board = new Board();
-        board.setPiece(new Piece(Tile.BLACK), new Point('d', 2));
-        board.setPiece(new Piece(Tile.BLACK), new Point('d', 3));
-        board.setPiece(new Piece(Tile.BLACK), new Point('d', 4));
-        board.setPiece(new Piece(Tile.WHITE), new Point('e', 2));
-        board.setPiece(new Piece(Tile.WHITE), new Point('e', 3));
-        board.setPiece(new Piece(Tile.WHITE), new Point('e', 4));
+        board.setPiece(new Piece(Tile.BLACK), Point.of('d', 2));
+        board.setPiece(new Piece(Tile.BLACK), Point.of('d', 3));
+        board.setPiece(new Piece(Tile.BLACK), Point.of('d', 4));
+        board.setPiece(new Piece(Tile.WHITE), Point.of('e', 2));
+        board.setPiece(new Piece(Tile.WHITE), Point.of('e', 3));
+        board.setPiece(new Piece(Tile.WHITE), Point.of('e', 4));
         VaildMoves check = new VaildMoves(board);
 
         HashMap<Point, ArrayList<Point>> piecesTest = check.getValidPlayerMoves(Tile.BLACK);
 
         System.out.println(board.toString(piecesTest));
 
-        for (Point flip : piecesTest.get(new Point('f', 4))) {
+        for (Point flip : piecesTest.get(Point.of('f', 4))) {
             System.out.println(flip);
         }
     }
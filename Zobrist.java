@@ -0,0 +1,111 @@
+import java.util.SplittableRandom;
+
+/**
+ * Holds the random keys used to hash board positions.
+ *
+ * A position's hash is the XOR of one key per occupied square and colour, so placing, removing
+ * or flipping a disc updates the hash with one or two XORs instead of rehashing the board.
+ */
+final class Zobrist {
+    private static final long SEED = 0x4F5448656C6C6FL;
+
+    static final long[] BLACK_KEYS = new long[64];
+    static final long[] WHITE_KEYS = new long[64];
+
+    // BLACK_KEYS[square] ^ WHITE_KEYS[square], the change made by flipping the disc on that square
+    static final long[] FLIP_KEYS = new long[64];
+
+    // FLIP_KEYS combined a byte at a time: entry row * 256 + bits is the flip key of the set bits of one row
+    private static final long[] FLIP_ROW_KEYS = new long[8 * 256];
+
+    // Mixed in when white is the player to move
+    static final long WHITE_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int square = 0; square < 64; square++) {
+            BLACK_KEYS[square] = random.nextLong();
+            WHITE_KEYS[square] = random.nextLong();
+            FLIP_KEYS[square] = BLACK_KEYS[square] ^ WHITE_KEYS[square];
+        }
+        WHITE_TO_MOVE = random.nextLong();
+
+        for (int row = 0; row < 8; row++) {
+            for (int bits = 1; bits < 256; bits++) {
+                int lowest = Integer.numberOfTrailingZeros(bits);
+                FLIP_ROW_KEYS[row * 256 + bits] = FLIP_ROW_KEYS[row * 256 + (bits & (bits - 1))] ^ FLIP_KEYS[row * 8 + lowest];
+            }
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Hashes a position from scratch.
+     *
+     * @param blackDiscs The bitboard of black discs.
+     * @param whiteDiscs The bitboard of white discs.
+     * @return The hash of the discs on the board, without the player to move.
+     */
+    static long hash(long blackDiscs, long whiteDiscs) {
+        return hashOf(blackDiscs, BLACK_KEYS) ^ hashOf(whiteDiscs, WHITE_KEYS);
+    }
+
+    /**
+     * Hashes a position and the player to move from scratch.
+     *
+     * @param blackDiscs The bitboard of black discs.
+     * @param whiteDiscs The bitboard of white discs.
+     * @param colour The colour of the player to move.
+     * @return The hash of the position.
+     */
+    static long hash(long blackDiscs, long whiteDiscs, Tile colour) {
+        return withSideToMove(hash(blackDiscs, whiteDiscs), colour);
+    }
+
+    /**
+     * Mixes the player to move into a board hash.
+     *
+     * @param boardHash The hash of the discs on the board.
+     * @param colour The colour of the player to move.
+     * @return The hash of the position with that player to move.
+     */
+    static long withSideToMove(long boardHash, Tile colour) {
+        return colour == Tile.WHITE ? boardHash ^ WHITE_TO_MOVE : boardHash;
+    }
+
+    /**
+     * Returns the change in hash made by flipping a set of discs. It looks the key up a row at a time,
+     * so it costs the same however many discs flip; searches call it once per move.
+     *
+     * @param flips The bitboard of flipped discs.
+     * @return The XOR of the flip keys of every square in the bitboard.
+     */
+    static long flipKey(long flips) {
+        return FLIP_ROW_KEYS[(int) flips & 0xFF]
+            ^ FLIP_ROW_KEYS[256 + ((int) (flips >>> 8) & 0xFF)]
+            ^ FLIP_ROW_KEYS[512 + ((int) (flips >>> 16) & 0xFF)]
+            ^ FLIP_ROW_KEYS[768 + ((int) (flips >>> 24) & 0xFF)]
+            ^ FLIP_ROW_KEYS[1024 + ((int) (flips >>> 32) & 0xFF)]
+            ^ FLIP_ROW_KEYS[1280 + ((int) (flips >>> 40) & 0xFF)]
+            ^ FLIP_ROW_KEYS[1536 + ((int) (flips >>> 48) & 0xFF)]
+            ^ FLIP_ROW_KEYS[1792 + (int) (flips >>> 56)];
+    }
+
+    /**
+     * XORs together the keys of every square in a bitboard.
+     *
+     * @param discs The bitboard to hash.
+     * @param keys The key of each square.
+     * @return The XOR of the keys of the set squares.
+     */
+    private static long hashOf(long discs, long[] keys) {
+        long hash = 0L;
+        while (discs != 0) {
+            hash ^= keys[Long.numberOfTrailingZeros(discs)];
+            discs &= discs - 1;
+        }
+        return hash;
+    }
+}